@@ -0,0 +1,109 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures multi-threaded ingestion into a sliding window collection. The "locked" group serializes producers on a
+ * global lock around an ordinary collection; the "concurrent" group lets producers add to a concurrent collection's
+ * striped buffers while a single consumer drains them. Run with a varying producer count (for example -tg 1,1 through
+ * -tg 16,1 for the concurrent group) to see how throughput scales with cores.
+ *
+ * The collections write to a store that only counts items, so the benchmark measures the cost of ingestion rather
+ * than the growth of an unbounded store.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentIngestBenchmark {
+
+    /**
+     * An EventStore that keeps no items.
+     */
+    static class CountingStore implements EventStore<Long> {
+        long _added;
+
+        @Override
+        public int size() {
+            return 0;
+        }
+
+        @Override
+        public Long get(int index) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        @Override
+        public long getTimestamp(int index) {
+            throw new IndexOutOfBoundsException();
+        }
+
+        @Override
+        public int add(Long item, long timestamp) {
+            _added++;
+            return 0;
+        }
+
+        @Override
+        public void removeFirst(int count) {
+        }
+    }
+
+    @State(Scope.Group)
+    public static class Collections {
+        SlidingWindowCollection<Long> _locked;
+        ConcurrentSlidingWindowCollection<Long> _concurrent;
+
+        @Setup(Level.Iteration)
+        public void setup() {
+            _locked = new SlidingWindowCollection<>(new CountingStore(), item -> item, 60000, 15000, 0);
+            _concurrent = new ConcurrentSlidingWindowCollection<>(new CountingStore(), item -> item, 60000, 15000, 0);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Producer {
+        Long _item = 1L;
+    }
+
+    @Benchmark
+    @Group("locked")
+    @GroupThreads(4)
+    public void lockedAdd(Collections collections, Producer producer) {
+        synchronized(collections._locked) {
+            collections._locked.add(producer._item);
+        }
+    }
+
+    @Benchmark
+    @Group("concurrent")
+    @GroupThreads(4)
+    public void concurrentAdd(Collections collections, Producer producer) {
+        collections._concurrent.add(producer._item);
+    }
+
+    @Benchmark
+    @Group("concurrent")
+    @GroupThreads(1)
+    public void concurrentDrain(Collections collections) {
+        collections._concurrent.drain();
+    }
+}
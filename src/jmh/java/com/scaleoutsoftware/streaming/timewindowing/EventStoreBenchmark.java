@@ -0,0 +1,110 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the stores behind the window collections under a sliding retention workload: every operation adds an
+ * item and evicts the items that have fallen out of the retained range of time, as a long-running collection does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventStoreBenchmark {
+
+    @Param({"ArrayList", "LinkedList", "RingBuffer", "Chunked", "OffHeap"})
+    String store;
+
+    @Param({"1000", "100000"})
+    int retained;
+
+    EventStore<Object> _store;
+    Object _item;
+    long _next;
+    long _probe;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        switch(store) {
+            case "ArrayList":
+                _store = new ListEventStore<>(new ArrayList<>(), item -> 0L);
+                break;
+            case "LinkedList":
+                _store = new ListEventStore<>(new LinkedList<>(), item -> 0L);
+                break;
+            case "RingBuffer":
+                _store = new RingBufferEventStore<>();
+                break;
+            case "OffHeap":
+                _store = new OffHeapEventStore<>(new RecordCodec<Object>() {
+                    @Override
+                    public int recordSize() {
+                        return 8;
+                    }
+
+                    @Override
+                    public void write(Object item, ByteBuffer buffer, int offset) {
+                        buffer.putLong(offset, 0L);
+                    }
+
+                    @Override
+                    public Object read(ByteBuffer buffer, int offset) {
+                        return _item;
+                    }
+                });
+                break;
+            default:
+                _store = new ChunkedEventStore<>();
+                break;
+        }
+        _item = new Object();
+        for(_next = 0; _next < retained; _next++) {
+            _store.add(_item, _next);
+        }
+    }
+
+    @Benchmark
+    public int addAndEvict() {
+        long timestamp = _next++;
+        _store.add(_item, timestamp);
+        return Utils.performEviction(_store, timestamp - retained + 1);
+    }
+
+    @Benchmark
+    public int addLateAndEvict() {
+        // items arrive up to 500 time units behind the newest item, as from feeds that are several seconds late
+        long newest = _next++;
+        long timestamp = newest - (newest * 2654435761L & 0x7fffffffL) % 500;
+        _store.add(_item, timestamp);
+        return Utils.performEviction(_store, newest - retained + 1);
+    }
+
+    @Benchmark
+    public int lowerBound() {
+        // a boundary search somewhere in the retained range, as done for every window
+        long time = _store.getTimestamp(0) + (_probe++ * 7919) % retained;
+        return _store.lowerBound(0, time);
+    }
+}
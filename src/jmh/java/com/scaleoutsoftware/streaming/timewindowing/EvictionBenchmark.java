@@ -0,0 +1,64 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Utils.performEviction on collections backed by ArrayList and LinkedList sources. Each operation appends a
+ * batch of items and evicts the same number from the head, as a long-running collection that retains a fixed range of
+ * time does when its start time advances.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class EvictionBenchmark {
+
+    @Param({"ArrayList", "LinkedList"})
+    String source;
+
+    @Param({"1000", "100000", "10000000"})
+    int size;
+
+    @Param({"1", "100"})
+    int batch;
+
+    EventStore<Long> _store;
+    long _next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        _store = new ListEventStore<>(source.equals("ArrayList") ? new ArrayList<>() : new LinkedList<>(), item -> item);
+        for(_next = 0; _next < size; _next++) {
+            _store.add(_next, _next);
+        }
+    }
+
+    @Benchmark
+    public int evict() {
+        for(int i = 0; i < batch; i++, _next++) {
+            _store.add(_next, _next);
+        }
+        return Utils.performEviction(_store, _next - size);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Utils.addTimeOrdered on ArrayList and LinkedList sources. Each operation inserts an item and removes it
+ * again, so the source keeps its size: in-order items are appended at the tail, and out-of-order items are inserted
+ * the parameter distance before the tail, which is where the cost of shifting or walking the list shows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class IngestionBenchmark {
+
+    @Param({"ArrayList", "LinkedList"})
+    String source;
+
+    @Param({"1000", "100000", "10000000"})
+    int size;
+
+    // how many items before the tail an item is inserted; 0 for in-order items
+    @Param({"0", "100"})
+    int lateness;
+
+    List<Long> _source;
+    Long _item;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        _source = source.equals("ArrayList") ? new ArrayList<>(size + 1) : new LinkedList<>();
+        for(long i = 0; i < size; i++) {
+            _source.add(i);
+        }
+        // equal timestamps are inserted after the existing item, so this lands exactly lateness items before the tail
+        _item = (long)Math.max(0, size - lateness - 1);
+    }
+
+    @Benchmark
+    public Long add() {
+        int index = Utils.addTimeOrdered(_source, item -> item, _item);
+        return _source.remove(index);
+    }
+}
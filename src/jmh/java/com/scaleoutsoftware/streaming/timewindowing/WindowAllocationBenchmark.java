@@ -0,0 +1,82 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the allocation of a full pass over the windows of a collection, visiting every item of every window, with
+ * and without reused windows. Run with the gc profiler, which the build enables, and compare gc.alloc.rate.norm: with
+ * reused windows a pass allocates a fixed number of bytes for its iterators regardless of the number of windows.
+ * Items are one time unit apart in a ring buffer store; windows are 100 units long and sliding windows start every 10
+ * units. Session sources have a gap after every 100 items.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WindowAllocationBenchmark {
+    static final long DURATION = 100;
+
+    @Param({"Sliding", "Tumbling", "Session"})
+    String windows;
+
+    @Param({"false", "true"})
+    boolean reuse;
+
+    @Param({"100000"})
+    int size;
+
+    AbstractWindowCollection<Long> _collection;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        switch(windows) {
+            case "Sliding":
+                _collection = new SlidingWindowCollection<>(new RingBufferEventStore<Long>(), item -> item, DURATION, DURATION / 10, 0);
+                break;
+            case "Tumbling":
+                _collection = new TumblingWindowCollection<>(new RingBufferEventStore<Long>(), item -> item, DURATION, 0);
+                break;
+            default:
+                _collection = new SessionWindowCollection<>(new RingBufferEventStore<Long>(), item -> item, 0, 5);
+                break;
+        }
+        for(long i = 0; i < size; i++) {
+            _collection.add(windows.equals("Session") ? i + (i / DURATION) * 10 : i);
+        }
+        _collection.setReuseWindows(reuse);
+    }
+
+    @Benchmark
+    public void iterate(Blackhole blackhole) {
+        for(TimeWindow<Long> window : _collection) {
+            for(Long item : window) {
+                blackhole.consume(item);
+            }
+        }
+    }
+
+    @Benchmark
+    public void forEach(Blackhole blackhole) {
+        _collection.forEach(window -> window.forEach(blackhole::consume));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full pass over the tumbling, sliding and session windows of ArrayList and LinkedList sources through the
+ * static Windowing methods, visiting every item of every window. Items are one time unit apart and windows are 1000
+ * units long. The overlap is the number of sliding windows each item falls in (the window duration divided by the
+ * time between windows); it is a parameter of the sliding benchmark's own state, so it does not multiply the tumbling
+ * and session runs. Session sources have a gap after every 1000 items.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class WindowIterationBenchmark {
+    static final long DURATION = 1000;
+
+    @Param({"ArrayList", "LinkedList"})
+    String source;
+
+    @Param({"1000", "100000", "10000000"})
+    int size;
+
+    List<Long> _source;
+    List<Long> _sessions;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        _source = source.equals("ArrayList") ? new ArrayList<>() : new LinkedList<>();
+        _sessions = source.equals("ArrayList") ? new ArrayList<>() : new LinkedList<>();
+        for(long i = 0; i < size; i++) {
+            _source.add(i);
+            _sessions.add(i + (i / DURATION) * 10);
+        }
+    }
+
+    @Benchmark
+    public void tumbling(Blackhole blackhole) {
+        consume(Windowing.toTumblingWindows(_source, item -> item, 0, size, DURATION), blackhole);
+    }
+
+    @Benchmark
+    public void sliding(Overlap overlap, Blackhole blackhole) {
+        consume(Windowing.toSlidingWindows(_source, item -> item, 0, size, DURATION, DURATION / overlap.overlap), blackhole);
+    }
+
+    @Benchmark
+    public void session(Blackhole blackhole) {
+        consume(Windowing.toSessionWindows(_sessions, item -> item, 0, Long.MAX_VALUE, 5), blackhole);
+    }
+
+    @State(Scope.Thread)
+    public static class Overlap {
+        @Param({"1", "4", "16"})
+        int overlap;
+    }
+
+    private static void consume(Iterable<TimeWindow<Long>> windows, Blackhole blackhole) {
+        for(TimeWindow<Long> window : windows) {
+            for(Long item : window) {
+                blackhole.consume(item);
+            }
+        }
+    }
+}
@@ -0,0 +1,689 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Base class of the window collections. Manages the time-ordered store behind a collection: items are inserted in
+ * chronological order, their timestamps are pulled with the selector exactly once, and items before the start time of
+ * the collection are evicted.
+ */
+abstract class AbstractWindowCollection<T> implements Iterable<TimeWindow<T>> {
+    EventStore<T> _store;
+    TimestampSelector<T> _selector;
+    long _startTime;
+    final List<StoreListener<T>> _listeners = new ArrayList<>();
+    // items added by producer threads that have not been drained into the store; null unless the collection accepts
+    // concurrent producers
+    IngestBuffer<T> _pending;
+    ArrayList<T> _drained;
+    // event-time tracking: windows close once the watermark passes their end time by the allowed lateness, and items
+    // before _closedBefore belong only to closed windows
+    boolean _closing;
+    long _watermark = Long.MIN_VALUE;
+    long _allowedLateness;
+    long _closedBefore;
+    Consumer<? super TimeWindow<T>> _closeTrigger;
+    Consumer<? super T> _lateItems;
+    // when set, the start time follows the closed windows so that their items are evicted
+    boolean _evictClosed;
+    // null unless the collection is measured; every measurement is guarded by a null check
+    WindowMetricsListener _metrics;
+    // when set, iteration moves one flyweight window per iterator instead of creating a window per step
+    boolean _reuseWindows;
+    // when set, iteration jumps over the windows that hold no items
+    boolean _skipEmptyWindows;
+    // null unless the start time follows a retention policy, which is consulted once every batch of added items
+    RetentionPolicy _retention;
+    int _retentionBatch;
+    int _retentionCountdown;
+
+    AbstractWindowCollection(List<T> source, TimestampSelector<T> selector, long startTime) {
+        this(new ListEventStore<>(source, selector), selector, startTime);
+    }
+
+    AbstractWindowCollection(EventStore<T> store, TimestampSelector<T> selector, long startTime) {
+        _store      = store;
+        _selector   = selector;
+        _startTime  = startTime;
+        _closedBefore = startTime;
+
+        performEviction();
+    }
+
+    /**
+     * Adds an item to the underlying source collection in chronological order.
+     * @param item the item to add
+     */
+    public void add(T item) {
+        if(_pending != null)
+            _pending.add(item);
+        else
+            insert(item);
+    }
+
+    private void insert(T item) {
+        long timestamp = _selector.select(item);
+        if(_metrics != null)
+            _metrics.onSelect(1);
+        if(_closing && timestamp < _closedBefore) {
+            lateItem(item);
+        }
+        // an item before the start time would be evicted immediately
+        else if(timestamp >= _startTime) {
+            int size = _store.size();
+            int index = _store.add(item, timestamp);
+            if(_metrics != null)
+                _metrics.onInsert(size - index);
+            for(int i = 0; i < _listeners.size(); i++) {
+                _listeners.get(i).onAdd(item, timestamp);
+            }
+            if(timestamp > _watermark)
+                advanceWatermark(timestamp);
+            if(_retention != null && --_retentionCountdown <= 0)
+                applyRetention();
+        }
+        else if(_metrics != null) {
+            _metrics.onDiscard();
+        }
+    }
+
+    /**
+     * Adds a batch of items to the underlying source collection in chronological order. The batch is sorted by
+     * timestamp and merged into the source in a single pass, and items before the start time are discarded before the
+     * merge rather than evicted after it, so adding k items to a collection of n items costs O(n + k log k) rather than
+     * k separate insertions.
+     * @param items the items to add
+     */
+    public void addAll(Collection<? extends T> items) {
+        if(_pending != null)
+            _pending.addAll(items);
+        else
+            insertAll(items);
+    }
+
+    private void insertAll(Collection<? extends T> items) {
+        Object[] batch = new Object[items.size()];
+        long[] timestamps = new long[batch.length];
+        int count = 0;
+        for(T item : items) {
+            long timestamp = _selector.select(item);
+            if(_closing && timestamp < _closedBefore) {
+                lateItem(item);
+            }
+            // an item before the start time would be evicted immediately
+            else if(timestamp >= _startTime) {
+                batch[count] = item;
+                timestamps[count++] = timestamp;
+            }
+            else if(_metrics != null) {
+                _metrics.onDiscard();
+            }
+        }
+        if(_metrics != null)
+            _metrics.onSelect(batch.length);
+        if(count == 0)
+            return;
+
+        Utils.sortByTimestamp(batch, timestamps, count);
+        @SuppressWarnings("unchecked")
+        List<T> sorted = (List<T>)Arrays.asList(batch).subList(0, count);
+        if(_metrics != null)
+            measureBatch(timestamps, count);
+        _store.addAll(sorted, timestamps);
+        for(int i = 0; i < _listeners.size(); i++) {
+            StoreListener<T> listener = _listeners.get(i);
+            for(int j = 0; j < count; j++) {
+                listener.onAdd(sorted.get(j), timestamps[j]);
+            }
+        }
+        if(timestamps[count - 1] > _watermark)
+            advanceWatermark(timestamps[count - 1]);
+        if(_retention != null && (_retentionCountdown -= count) <= 0)
+            applyRetention();
+    }
+
+    /**
+     * Sets the listener that receives the runtime measurements of this collection, such as a WindowMetrics instance
+     * registered with JMX. Without a listener, no measurement is performed.
+     * @param metrics the listener, or null to stop measuring
+     */
+    public void setMetrics(WindowMetricsListener metrics) {
+        _metrics = metrics;
+    }
+
+    /**
+     * Sets whether iterating this collection reuses a single window object. When set, each iterator, spliterator and
+     * forEach pass creates one window and moves it to every following window, and iterating the items of the window
+     * reuses one item iterator, so a pass over a collection backed by an indexed store allocates nothing per window.
+     * A reused window, and any item iterator taken from it, is only valid until the next window is produced: callers
+     * must not keep a window, collect windows into a list or stream them through operations that buffer them, such as
+     * sorted().
+     * @param reuse whether to reuse a single window object while iterating
+     */
+    public void setReuseWindows(boolean reuse) {
+        _reuseWindows = reuse;
+    }
+
+    /**
+     * Sets whether iterating this collection skips the windows that hold no items. Each window is followed by the
+     * next window holding an item, found from the item's timestamp, so a pass costs O(occupied windows) however much
+     * time the collection spans, for example when the start time is far before the first item or items arrive in
+     * bursts. Session windows are never empty and are not affected. When empty windows are skipped, the spliterator of
+     * the collection no longer reports an exact size.
+     * @param skip whether to skip empty windows
+     */
+    public void setSkipEmptyWindows(boolean skip) {
+        _skipEmptyWindows = skip;
+    }
+
+    /**
+     * Sets the policy that decides how much history this collection retains, such as a maximum age, item count or
+     * memory budget from RetentionPolicies. The policy is applied to the items already in the collection and then once
+     * for every batch of added items, so eviction is amortized over the batch: between applications the collection can
+     * exceed the policy by up to a batch of items. The batch is an eighth of the retained items, so the footprint stays
+     * within about 12% of the policy's bound, plus the items of at most one window step kept by aligning the start
+     * time to the window grid.
+     * @param policy the retention policy, or null to keep the start time fixed
+     */
+    public void setRetentionPolicy(RetentionPolicy policy) {
+        setRetentionPolicy(policy, 0);
+    }
+
+    /**
+     * Sets the policy that decides how much history this collection retains, applied once for every batch of the
+     * parameter number of added items. When the policy is applied, the start time of the collection advances to the
+     * time the policy retains from, and the items before it are evicted. For sliding and tumbling windows the start
+     * time is rounded down to the start of the window step that contains that time, so that the remaining windows are
+     * unchanged, and the start time never passes the watermark: the window receiving items is never evicted, at the
+     * cost of retaining up to one step more than the policy asks for. Windows that are evicted before they close
+     * are not passed to the close trigger, and items added later for times before the start time are discarded.
+     * @param policy the retention policy, or null to keep the start time fixed
+     * @param batchSize the number of items added between applications of the policy, or 0 for an eighth of the
+     *                  retained items
+     */
+    public void setRetentionPolicy(RetentionPolicy policy, int batchSize) {
+        drainPending();
+        if(batchSize < 0)
+            throw new IllegalArgumentException("Batch size cannot be negative.");
+        _retention = policy;
+        _retentionBatch = batchSize;
+        if(policy != null)
+            applyRetention();
+    }
+
+    /**
+     * Advances the start time to the time the retention policy retains from, no later than the watermark and aligned
+     * down to the window grid, and evicts the items before it.
+     */
+    private void applyRetention() {
+        long retainFrom = Math.min(_retention.retainFrom(_store, _watermark), _watermark);
+        if(retainFrom > _startTime) {
+            long step = windowStep();
+            if(step > 0)
+                retainFrom = _startTime + Math.floorDiv(retainFrom - _startTime, step) * step;
+            _startTime = retainFrom;
+            _closedBefore = Math.max(_closedBefore, _startTime);
+            performEviction();
+        }
+        _retentionCountdown = _retentionBatch > 0 ? _retentionBatch : Math.max(16, _store.size() >> 3);
+    }
+
+    /**
+     * Returns the time between the start times of consecutive windows, to which the start time is aligned when a
+     * retention policy advances it.
+     * @return the time between window start times, or 0 if windows are not on a fixed grid
+     */
+    long windowStep() {
+        return 0;
+    }
+
+    /**
+     * Sets how long after the watermark passes the end of a window the window stays open to late items. Setting the
+     * allowed lateness enables window closing: items that arrive for closed windows are passed to the late item
+     * handler instead of being added to the source collection.
+     * @param allowedLateness the allowed lateness, in the units of the timestamps
+     */
+    public void setAllowedLateness(long allowedLateness) {
+        drainPending();
+        if(allowedLateness < 0)
+            throw new IllegalArgumentException("Allowed lateness cannot be negative.");
+        _allowedLateness = allowedLateness;
+        _closing = true;
+        closeWindows();
+    }
+
+    /**
+     * Registers a trigger that is invoked exactly once for every window that holds items, in order, when the watermark
+     * passes the end of the window by the allowed lateness. Empty windows are skipped, so closing a long gap in the
+     * data costs one search rather than a step per window. The window passed to the trigger is a view over the source
+     * collection and is valid until the collection is next modified. Registering a trigger enables window closing.
+     * @param trigger the action to perform on each closed window
+     */
+    public void onWindowClose(Consumer<? super TimeWindow<T>> trigger) {
+        drainPending();
+        _closeTrigger = trigger;
+        _closing = true;
+        closeWindows();
+    }
+
+    /**
+     * Registers a side channel for items that arrive after every window they belong to has closed. Without a side
+     * channel, such items are discarded.
+     * @param handler the action to perform on each late item
+     */
+    public void onLateItem(Consumer<? super T> handler) {
+        _lateItems = handler;
+    }
+
+    /**
+     * Returns the watermark of this collection: the most recent timestamp added or the time the watermark was
+     * explicitly advanced to, whichever is later.
+     * @return the watermark, or Long.MIN_VALUE if no item has been added
+     */
+    public long getWatermark() {
+        drainPending();
+        return _watermark;
+    }
+
+    /**
+     * Advances the watermark to the parameter time, closing the windows it has passed, for example when a source
+     * signals that no items before the time will arrive. A watermark before the current one is ignored.
+     * @param time the new watermark
+     */
+    public void advanceWatermark(long time) {
+        if(time <= _watermark)
+            return;
+        _watermark = time;
+        closeWindows();
+    }
+
+    private void lateItem(T item) {
+        if(_metrics != null)
+            _metrics.onDiscard();
+        if(_lateItems != null)
+            _lateItems.accept(item);
+    }
+
+    private void closeWindows() {
+        if(!_closing || _watermark == Long.MIN_VALUE)
+            return;
+        long closeTime = _watermark - _allowedLateness;
+        if(closeTime > _closedBefore)
+            _closedBefore = Math.max(_closedBefore, closeWindows(closeTime, _closeTrigger));
+        if(_evictClosed && _closedBefore > _startTime) {
+            _startTime = _closedBefore;
+            performEviction();
+        }
+    }
+
+    /**
+     * Registers accumulators that keep the result of an aggregator up to date for every window of this collection as
+     * items are added and evicted, and returns a function that reads the result of a window from them without
+     * visiting its items.
+     * @param aggregator the aggregator to apply to each window
+     * @return a function from a window of this collection to the result of the aggregator over its items
+     */
+    abstract <A, R> Function<TimeWindow<T>, R> addWindowAccumulators(WindowAggregator<? super T, A, R> aggregator);
+
+    /**
+     * Closes the windows after the last closed window that end at or before the parameter time.
+     * @param closeTime the time windows must end by to close
+     * @param trigger the action to perform on each closed window, or null
+     * @return the time before which every window has closed
+     */
+    abstract long closeWindows(long closeTime, Consumer<? super TimeWindow<T>> trigger);
+
+    /**
+     * Closes sliding windows of the parameter duration that start every parameter step on the grid anchored at the
+     * start time. Only windows that hold items are passed to the trigger: from each window the search jumps to the
+     * first window that ends after the next item, so the cost depends on the occupied windows rather than on the time
+     * closed.
+     */
+    long closeSlidingWindows(long closeTime, Consumer<? super TimeWindow<T>> trigger, long duration, long every) {
+        long start = _closedBefore;
+        if(closeTime - start < duration)
+            return start;
+        long count = (closeTime - start - duration) / every + 1;
+        if(trigger != null) {
+            int size = _store.size();
+            int index = 0;
+            long position = 0;
+            while(position < count) {
+                long windowStart = start + position * every;
+                index = _store.lowerBound(index, windowStart);
+                if(index == size)
+                    break;
+                long timestamp = _store.getTimestamp(index);
+                if(timestamp >= windowStart + duration) {
+                    // windows shorter than their step may still miss the item; the next step checks again
+                    position = Math.max(position + 1, Math.floorDiv(timestamp - duration - start, every) + 1);
+                    continue;
+                }
+                SlidingTimeWindow<T> window = new SlidingTimeWindow<>(windowStart, windowStart + duration);
+                window.setItems(_store, index);
+                trigger.accept(window);
+                position++;
+            }
+        }
+        return start + count * every;
+    }
+
+    /**
+     * Writes the state of this collection to a channel: its window parameters, start time and watermark, and its items
+     * encoded as fixed-size records. A collection restored from the checkpoint serves the same windows without
+     * replaying its input.
+     * @param channel the channel to write to, such as a FileChannel
+     * @param codec the codec used to convert items to records
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public void checkpoint(WritableByteChannel channel, RecordCodec<T> codec) throws IOException {
+        drainPending();
+        Checkpoint.write(this, codec, channel);
+    }
+
+    /**
+     * Restores the state of this collection from a checkpoint. The collection must be empty and have the same window
+     * parameters as the collection the checkpoint was written from; aggregations registered on the collection are
+     * rebuilt from the restored items. A close trigger or allowed lateness set before the restore is kept, and the
+     * trigger then fires for the restored windows that the restored watermark has already passed and that the
+     * checkpointed collection had not closed.
+     * @param channel the channel to read from, such as a FileChannel
+     * @param codec the codec used to convert records to items
+     * @throws IOException if the checkpoint cannot be read or does not match this collection
+     */
+    public void restore(ReadableByteChannel channel, RecordCodec<T> codec) throws IOException {
+        drainPending();
+        if(_store.size() != 0)
+            throw new IllegalStateException("A checkpoint can only be restored into an empty collection.");
+        Checkpoint.read(this, codec, channel);
+        closeWindows();
+    }
+
+    /**
+     * Adds a sorted batch of restored items to the store, notifying the listeners.
+     */
+    void restoreItems(List<T> items, long[] timestamps) {
+        _store.addAll(items, timestamps);
+        for(int i = 0; i < _listeners.size(); i++) {
+            StoreListener<T> listener = _listeners.get(i);
+            for(int j = 0; j < items.size(); j++) {
+                listener.onAdd(items.get(j), timestamps[j]);
+            }
+        }
+    }
+
+    /**
+     * Returns the kind of this collection and its window durations, which a checkpoint must match to be restored.
+     * @return the kind of collection followed by two durations
+     */
+    abstract long[] windowParameters();
+
+    /**
+     * Makes add() and addAll() safe to call from multiple producer threads. Added items are buffered until the
+     * consumer drains them into the store.
+     */
+    void enableConcurrentIngestion() {
+        _pending = new IngestBuffer<>();
+        _drained = new ArrayList<>();
+    }
+
+    /**
+     * Moves the items buffered by concurrent producers into the store as a single batch.
+     */
+    void drainPending() {
+        if(_pending == null)
+            return;
+        synchronized(_pending) {
+            _pending.drainTo(_drained);
+            if(!_drained.isEmpty()) {
+                insertAll(_drained);
+                _drained.clear();
+            }
+        }
+    }
+
+    /**
+     * Reports the out-of-order distance of every item in a sorted batch before the batch is merged into the store: the
+     * number of stored items newer than the item.
+     */
+    private void measureBatch(long[] timestamps, int count) {
+        int size = _store.size();
+        int index = 0;
+        for(int i = 0; i < count; i++) {
+            index = timestamps[i] == Long.MAX_VALUE ? size : _store.lowerBound(index, timestamps[i] + 1);
+            _metrics.onInsert(size - index);
+        }
+    }
+
+    void performEviction() {
+        int evicted = Utils.performEviction(_store, _startTime);
+        if(evicted > 0) {
+            if(_metrics != null)
+                _metrics.onEvict(evicted);
+            for(int i = 0; i < _listeners.size(); i++) {
+                _listeners.get(i).onEvict(_startTime);
+            }
+        }
+    }
+
+    /**
+     * Registers a listener that keeps derived state up to date as items are added and evicted.
+     * @param listener the listener to register
+     * @return the listener
+     */
+    <L extends StoreListener<T>> L addListener(L listener) {
+        _listeners.add(listener);
+        return listener;
+    }
+
+    /**
+     * Transforms the store into an iterable collection of time windows ending at the parameter time.
+     * @param end the end time (exclusive) of the last window
+     * @return an iterable collection of time windows
+     */
+    abstract Iterable<TimeWindow<T>> windows(long end);
+
+    /**
+     * Returns the end time (exclusive) of the windows in this collection: one past the most recent item.
+     * @return the end time of the windows in this collection
+     */
+    long endTime() {
+        return _store.getTimestamp(_store.size() - 1) + 1;
+    }
+
+    @Override
+    public Iterator<TimeWindow<T>> iterator() {
+        drainPending();
+        if(_store.size() == 0) {
+            return Collections.emptyIterator();
+        } else {
+            Iterator<TimeWindow<T>> windows = windows(endTime()).iterator();
+            return _metrics == null ? windows : new MeasuredIterator(windows);
+        }
+    }
+
+    @Override
+    public void forEach(Consumer<? super TimeWindow<T>> action) {
+        drainPending();
+        if(_store.size() != 0) {
+            if(_metrics == null) {
+                windows(endTime()).forEach(action);
+            } else {
+                long start = System.nanoTime();
+                int[] counts = new int[2];
+                windows(endTime()).forEach(window -> {
+                    counts[0]++;
+                    action.accept(window);
+                    if(isKnownEmpty(window))
+                        counts[1]++;
+                });
+                _metrics.onIteration(counts[0], counts[1], System.nanoTime() - start);
+            }
+        }
+    }
+
+    @Override
+    public Spliterator<TimeWindow<T>> spliterator() {
+        drainPending();
+        if(_store.size() == 0) {
+            return Spliterators.emptySpliterator();
+        } else {
+            Spliterator<TimeWindow<T>> windows = windows(endTime()).spliterator();
+            return _metrics == null ? windows : new MeasuredSpliterator(windows, new Pass());
+        }
+    }
+
+    /**
+     * Returns whether a window is known to hold no item without looking up its items, which a lazily resolved window
+     * only does when its items are first read. Windows that were never read are not counted as empty by the metrics.
+     */
+    static boolean isKnownEmpty(TimeWindow<?> window) {
+        return window instanceof SlidingTimeWindow && ((SlidingTimeWindow<?>)window).isKnownEmpty();
+    }
+
+    /**
+     * Counts the windows of a pass and reports the pass to the metrics listener when the iterator is exhausted.
+     */
+    class MeasuredIterator implements Iterator<TimeWindow<T>> {
+        final Iterator<TimeWindow<T>> _windows;
+        final long _start = System.nanoTime();
+        int _count;
+        int _empty;
+        boolean _reported;
+
+        MeasuredIterator(Iterator<TimeWindow<T>> windows) {
+            _windows = windows;
+        }
+
+        // the window returned last, checked for emptiness once the caller is done with it
+        TimeWindow<T> _previous;
+
+        @Override
+        public boolean hasNext() {
+            boolean hasNext = _windows.hasNext();
+            if(!hasNext && !_reported && _metrics != null) {
+                countPrevious();
+                _reported = true;
+                _metrics.onIteration(_count, _empty, System.nanoTime() - _start);
+            }
+            return hasNext;
+        }
+
+        @Override
+        public TimeWindow<T> next() {
+            // a reused window is reset by the next call, so the previous window is checked first
+            countPrevious();
+            _previous = _windows.next();
+            _count++;
+            return _previous;
+        }
+
+        private void countPrevious() {
+            if(_previous != null && isKnownEmpty(_previous))
+                _empty++;
+            _previous = null;
+        }
+    }
+
+    /**
+     * The counts of a pass over the windows that may be split across threads by a parallel stream.
+     */
+    class Pass {
+        final long _start = System.nanoTime();
+        final LongAdder _count = new LongAdder();
+        final LongAdder _empty = new LongAdder();
+        // the spliterators of the pass that have not been exhausted
+        final AtomicInteger _open = new AtomicInteger(1);
+
+        void close() {
+            if(_open.decrementAndGet() == 0 && _metrics != null)
+                _metrics.onIteration(_count.intValue(), _empty.intValue(), System.nanoTime() - _start);
+        }
+    }
+
+    /**
+     * Counts the windows traversed by a spliterator and its splits, and reports the pass to the metrics listener when
+     * every split is exhausted.
+     */
+    class MeasuredSpliterator implements Spliterator<TimeWindow<T>> {
+        final Spliterator<TimeWindow<T>> _windows;
+        final Pass _pass;
+        boolean _closed;
+
+        MeasuredSpliterator(Spliterator<TimeWindow<T>> windows, Pass pass) {
+            _windows = windows;
+            _pass    = pass;
+        }
+
+        private Consumer<TimeWindow<T>> measured(Consumer<? super TimeWindow<T>> action) {
+            return window -> {
+                _pass._count.increment();
+                action.accept(window);
+                if(isKnownEmpty(window))
+                    _pass._empty.increment();
+            };
+        }
+
+        private void close() {
+            if(!_closed) {
+                _closed = true;
+                _pass.close();
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super TimeWindow<T>> action) {
+            boolean advanced = _windows.tryAdvance(measured(action));
+            if(!advanced)
+                close();
+            return advanced;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super TimeWindow<T>> action) {
+            _windows.forEachRemaining(measured(action));
+            close();
+        }
+
+        @Override
+        public Spliterator<TimeWindow<T>> trySplit() {
+            Spliterator<TimeWindow<T>> prefix = _windows.trySplit();
+            if(prefix == null)
+                return null;
+            _pass._open.incrementAndGet();
+            return new MeasuredSpliterator(prefix, _pass);
+        }
+
+        @Override
+        public long estimateSize() {
+            return _windows.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return _windows.characteristics();
+        }
+    }
+}
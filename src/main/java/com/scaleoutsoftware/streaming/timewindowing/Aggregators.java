@@ -0,0 +1,110 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.util.DoubleSummaryStatistics;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Static factories for common WindowAggregators.
+ */
+public class Aggregators {
+
+    /**
+     * Counts the items in a window.
+     * @param <T> the type of the items being aggregated
+     * @return an aggregator that counts items
+     */
+    public static <T> WindowAggregator<T, ?, Long> count() {
+        return new StatisticsAggregator<T, Long>(item -> 0, DoubleSummaryStatistics::getCount);
+    }
+
+    /**
+     * Sums a value of the items in a window.
+     * @param value the function used to pull a value from an item
+     * @param <T> the type of the items being aggregated
+     * @return an aggregator that sums values
+     */
+    public static <T> WindowAggregator<T, ?, Double> sum(ToDoubleFunction<? super T> value) {
+        return new StatisticsAggregator<T, Double>(value, DoubleSummaryStatistics::getSum);
+    }
+
+    /**
+     * Averages a value of the items in a window. The average of an empty window is zero.
+     * @param value the function used to pull a value from an item
+     * @param <T> the type of the items being aggregated
+     * @return an aggregator that averages values
+     */
+    public static <T> WindowAggregator<T, ?, Double> average(ToDoubleFunction<? super T> value) {
+        return new StatisticsAggregator<T, Double>(value, DoubleSummaryStatistics::getAverage);
+    }
+
+    /**
+     * Finds the minimum value of the items in a window. The minimum of an empty window is positive infinity.
+     * @param value the function used to pull a value from an item
+     * @param <T> the type of the items being aggregated
+     * @return an aggregator that finds the minimum value
+     */
+    public static <T> WindowAggregator<T, ?, Double> min(ToDoubleFunction<? super T> value) {
+        return new StatisticsAggregator<T, Double>(value, DoubleSummaryStatistics::getMin);
+    }
+
+    /**
+     * Finds the maximum value of the items in a window. The maximum of an empty window is negative infinity.
+     * @param value the function used to pull a value from an item
+     * @param <T> the type of the items being aggregated
+     * @return an aggregator that finds the maximum value
+     */
+    public static <T> WindowAggregator<T, ?, Double> max(ToDoubleFunction<? super T> value) {
+        return new StatisticsAggregator<T, Double>(value, DoubleSummaryStatistics::getMax);
+    }
+
+    /**
+     * An aggregator that keeps count, sum, min and max of a value in a DoubleSummaryStatistics accumulator.
+     */
+    static class StatisticsAggregator<T, R> implements WindowAggregator<T, DoubleSummaryStatistics, R> {
+        final ToDoubleFunction<? super T> _value;
+        final Function<DoubleSummaryStatistics, R> _result;
+
+        StatisticsAggregator(ToDoubleFunction<? super T> value, Function<DoubleSummaryStatistics, R> result) {
+            _value  = value;
+            _result = result;
+        }
+
+        @Override
+        public DoubleSummaryStatistics createAccumulator() {
+            return new DoubleSummaryStatistics();
+        }
+
+        @Override
+        public DoubleSummaryStatistics accumulate(DoubleSummaryStatistics accumulator, T item) {
+            accumulator.accept(_value.applyAsDouble(item));
+            return accumulator;
+        }
+
+        @Override
+        public DoubleSummaryStatistics combine(DoubleSummaryStatistics left, DoubleSummaryStatistics right) {
+            left.combine(right);
+            return left;
+        }
+
+        @Override
+        public R getResult(DoubleSummaryStatistics accumulator) {
+            return _result.apply(accumulator);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Writes and reads the state of a window collection in a compact, versioned binary format. A checkpoint holds a
+ * header followed by the items of the collection in chronological order:
+ *
+ * <pre>
+ *     int    magic ("SOTW")
+ *     int    format version
+ *     long[3] window parameters: the kind of collection and its durations
+ *     long   start time
+ *     byte   1 if window closing is enabled
+ *     long   watermark
+ *     long   allowed lateness
+ *     long   closed-before time
+ *     int    record size
+ *     int    item count
+ *     item count * (long timestamp, record)
+ * </pre>
+ *
+ * On restore, closing settings already configured on the collection, such as a close trigger or allowed lateness,
+ * are kept; the restored watermark and closed-before time then decide which windows the trigger fires for.
+ *
+ * All values are big-endian. Items are copied through a direct buffer in large blocks, so writing and reading run
+ * close to the speed of the channel. Derived state, such as aggregations and the session index, is rebuilt from the
+ * items as they are restored, which keeps the format independent of user accumulator types.
+ */
+final class Checkpoint {
+    static final int MAGIC = 0x534F5457;
+    static final int VERSION = 1;
+    static final int BUFFER_SIZE = 1 << 20;
+
+    private Checkpoint() {
+    }
+
+    static <T> void write(AbstractWindowCollection<T> collection, RecordCodec<T> codec, WritableByteChannel channel) throws IOException {
+        EventStore<T> store = collection._store;
+        int recordSize = codec.recordSize();
+        int size = store.size();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE, 8 + recordSize));
+
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        for(long parameter : collection.windowParameters()) {
+            buffer.putLong(parameter);
+        }
+        buffer.putLong(collection._startTime);
+        buffer.put((byte)(collection._closing ? 1 : 0));
+        buffer.putLong(collection._watermark);
+        buffer.putLong(collection._allowedLateness);
+        buffer.putLong(collection._closedBefore);
+        buffer.putInt(recordSize);
+        buffer.putInt(size);
+
+        // items are read through an iterator, so stores over lists without random access are walked once
+        Iterator<T> items = store.subList(0, size).iterator();
+        for(int i = 0; i < size; i++) {
+            if(buffer.remaining() < 8 + recordSize)
+                flush(buffer, channel);
+            int position = buffer.position();
+            buffer.putLong(position, store.getTimestamp(i));
+            codec.write(items.next(), buffer, position + 8);
+            buffer.position(position + 8 + recordSize);
+        }
+        flush(buffer, channel);
+    }
+
+    static <T> void read(AbstractWindowCollection<T> collection, RecordCodec<T> codec, ReadableByteChannel channel) throws IOException {
+        int recordSize = codec.recordSize();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE, 8 + recordSize));
+        buffer.flip();
+
+        fill(buffer, channel, 8 + 3 * 8);
+        if(buffer.getInt() != MAGIC)
+            throw new IOException("Not a window collection checkpoint.");
+        int version = buffer.getInt();
+        if(version != VERSION)
+            throw new IOException("Unsupported checkpoint version: " + version);
+        long[] parameters = new long[3];
+        for(int i = 0; i < parameters.length; i++) {
+            parameters[i] = buffer.getLong();
+        }
+        if(!Arrays.equals(parameters, collection.windowParameters()))
+            throw new IOException("The checkpoint was written by a collection with different window parameters.");
+
+        fill(buffer, channel, 8 + 1 + 8 + 8 + 8 + 4 + 4);
+        long startTime = buffer.getLong();
+        boolean closing = buffer.get() != 0;
+        long watermark = buffer.getLong();
+        long allowedLateness = buffer.getLong();
+        long closedBefore = buffer.getLong();
+        if(buffer.getInt() != recordSize)
+            throw new IOException("The checkpoint was written with a different record size.");
+        int count = buffer.getInt();
+
+        // items are decoded in blocks and added to the store as sorted batches
+        int block = Math.max(1, BUFFER_SIZE / (8 + recordSize));
+        Object[] items = new Object[Math.min(block, count)];
+        long[] timestamps = new long[items.length];
+        collection._startTime = startTime;
+        for(int i = 0; i < collection._listeners.size(); i++) {
+            collection._listeners.get(i).onRestore(startTime);
+        }
+        for(int done = 0; done < count; ) {
+            int n = Math.min(items.length, count - done);
+            for(int i = 0; i < n; i++) {
+                fill(buffer, channel, 8 + recordSize);
+                int position = buffer.position();
+                timestamps[i] = buffer.getLong(position);
+                items[i] = codec.read(buffer, position + 8);
+                buffer.position(position + 8 + recordSize);
+            }
+            collection.restoreItems(new Batch<T>(items, n), timestamps);
+            done += n;
+        }
+
+        // closing configured on the live collection before the restore takes precedence over the checkpoint's
+        if(!collection._closing)
+            collection._allowedLateness = allowedLateness;
+        collection._closing         = collection._closing || closing;
+        collection._watermark       = Math.max(collection._watermark, watermark);
+        collection._closedBefore    = Math.max(startTime, closedBefore);
+    }
+
+    private static void flush(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while(buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Reads from the channel until the buffer holds at least the parameter number of bytes.
+     */
+    private static void fill(ByteBuffer buffer, ReadableByteChannel channel, int bytes) throws IOException {
+        if(buffer.remaining() >= bytes)
+            return;
+        buffer.compact();
+        while(buffer.position() < bytes) {
+            if(channel.read(buffer) < 0)
+                throw new EOFException("The checkpoint is truncated.");
+        }
+        buffer.flip();
+    }
+
+    /**
+     * A list view over the first items of a reused array.
+     */
+    static class Batch<T> extends AbstractList<T> {
+        final Object[] _items;
+        final int _size;
+
+        Batch(Object[] items, int size) {
+            _items  = items;
+            _size   = size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            return (T)_items[index];
+        }
+
+        @Override
+        public int size() {
+            return _size;
+        }
+    }
+}
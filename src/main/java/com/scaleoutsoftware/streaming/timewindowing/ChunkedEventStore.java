@@ -0,0 +1,337 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.util.Arrays;
+
+/**
+ * An EventStore backed by a sorted sequence of fixed-capacity chunks, suited to feeds that deliver items out of
+ * order. An item is inserted by locating its chunk with a binary search over the chunks, locating its position with a
+ * binary search within the chunk, and shifting at most one chunk's worth of items. A full chunk is split in half.
+ * Unlike a List, inserting an item never moves the items in other chunks. The chunk sizes are kept in a Fenwick tree,
+ * so the index of a chunk's first item is a prefix sum: an insert updates O(log c) tree nodes for c chunks, however far
+ * behind the newest item it lands, and only a split, which happens once per half a chunk of inserts, rebuilds the tree.
+ *
+ * Items are read by index with a descent of the tree, and sequential reads (such as iterating a window) reuse the last
+ * chunk found. Evicting items from the head releases whole chunks.
+ * @param <T> the type of the items in the store
+ */
+public class ChunkedEventStore<T> implements EventStore<T> {
+    static final int DEFAULT_CHUNK_SIZE = 512;
+
+    /**
+     * A run of consecutive items, held at [_offset, _offset + _size) of its arrays.
+     */
+    static class Chunk {
+        final Object[] _items;
+        final long[] _timestamps;
+        int _offset;
+        int _size;
+
+        Chunk(int capacity) {
+            _items      = new Object[capacity];
+            _timestamps = new long[capacity];
+        }
+
+        long first() {
+            return _timestamps[_offset];
+        }
+
+        long last() {
+            return _timestamps[_offset + _size - 1];
+        }
+    }
+
+    final int _chunkSize;
+    // the live chunks are _chunks[_first, _first + _count)
+    Chunk[] _chunks;
+    int _first;
+    int _count;
+    // a Fenwick tree over the sizes of the chunks in the directory, 1-based: the number of items before chunk i is the
+    // prefix sum up to i. Released and unused directory slots have size 0.
+    int[] _tree;
+    int _size;
+    // the chunk found by the last lookup by index in the high 32 bits and the index of its first item in the low 32
+    // bits, or -1; packed into one value so that concurrent readers never see the chunk of one lookup with the start of
+    // another
+    volatile long _cached = -1;
+
+    /**
+     * Instantiates a new, empty ChunkedEventStore.
+     */
+    public ChunkedEventStore() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Instantiates a new, empty ChunkedEventStore.
+     * @param chunkSize the maximum number of items in a chunk
+     */
+    public ChunkedEventStore(int chunkSize) {
+        if(chunkSize < 2)
+            throw new IllegalArgumentException("Chunk size must be at least 2.");
+        _chunkSize  = chunkSize;
+        _chunks     = new Chunk[16];
+        _tree       = new int[17];
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    @Override
+    public T get(int index) {
+        long located = locate(index);
+        Chunk c = _chunks[(int)(located >>> 32)];
+        @SuppressWarnings("unchecked")
+        T item = (T)c._items[c._offset + index - (int)located];
+        return item;
+    }
+
+    @Override
+    public long getTimestamp(int index) {
+        long located = locate(index);
+        Chunk c = _chunks[(int)(located >>> 32)];
+        return c._timestamps[c._offset + index - (int)located];
+    }
+
+    /**
+     * Returns the directory index of the chunk holding the item at the parameter index in the high 32 bits, and the
+     * index of the chunk's first item in the low 32 bits.
+     */
+    long locate(int index) {
+        if(index < 0 || index >= _size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _size);
+        long cached = _cached;
+        if(cached >= 0) {
+            int start = (int)cached;
+            if(start <= index && index < start + _chunks[(int)(cached >>> 32)]._size)
+                return cached;
+        }
+
+        // descend the tree to the last chunk whose first item is at or before the index
+        int chunk = 0, start = 0;
+        for(int step = Integer.highestOneBit(_tree.length - 1); step > 0; step >>= 1) {
+            int next = chunk + step;
+            if(next < _tree.length && start + _tree[next] <= index) {
+                chunk = next;
+                start += _tree[next];
+            }
+        }
+        cached = ((long)chunk << 32) | start;
+        _cached = cached;
+        return cached;
+    }
+
+    /**
+     * Returns the index of the first item of the parameter chunk: the number of items in the chunks before it.
+     */
+    private int start(int chunk) {
+        int start = 0;
+        for(int i = chunk; i > 0; i -= i & -i) {
+            start += _tree[i];
+        }
+        return start;
+    }
+
+    /**
+     * Adds the parameter delta to the size of a chunk in the tree.
+     */
+    private void resize(int chunk, int delta) {
+        for(int i = chunk + 1; i < _tree.length; i += i & -i) {
+            _tree[i] += delta;
+        }
+    }
+
+    /**
+     * Rebuilds the tree from the sizes of the live chunks, after chunks have moved in the directory.
+     */
+    private void rebuildTree() {
+        if(_tree.length == _chunks.length + 1)
+            Arrays.fill(_tree, 0);
+        else
+            _tree = new int[_chunks.length + 1];
+        for(int i = _first; i < _first + _count; i++) {
+            _tree[i + 1] = _chunks[i]._size;
+        }
+        for(int i = 1; i < _tree.length; i++) {
+            int parent = i + (i & -i);
+            if(parent < _tree.length)
+                _tree[parent] += _tree[i];
+        }
+    }
+
+    @Override
+    public int add(T item, long timestamp) {
+        ensureDirectory();
+        _cached = -1;
+        if(_count == 0)
+            insertChunk(_first);
+
+        // the first chunk holding a newer item; in-order items go to the end of the last chunk
+        int last = _first + _count - 1;
+        int chunk;
+        int position;
+        if(_chunks[last]._size == 0 || timestamp >= _chunks[last].last()) {
+            chunk = last;
+            position = _chunks[last]._size;
+        } else {
+            int low = _first, high = last;
+            while(low < high) {
+                int mid = (low + high) >>> 1;
+                if(_chunks[mid].last() > timestamp)
+                    high = mid;
+                else
+                    low = mid + 1;
+            }
+            chunk = low;
+            Chunk c = _chunks[chunk];
+            position = Utils.upperBound(c._timestamps, c._offset, c._offset + c._size, timestamp) - c._offset;
+        }
+
+        Chunk c = _chunks[chunk];
+        if(c._size == _chunkSize) {
+            if(position == _chunkSize && chunk == last) {
+                // appending past a full last chunk starts a new chunk; the empty slot after the last chunk has size 0
+                // in the tree already
+                insertChunk(chunk + 1);
+                chunk++;
+                position = 0;
+            } else {
+                // split the full chunk, moving its upper half to a new chunk
+                int half = _chunkSize / 2;
+                insertChunk(chunk + 1);
+                Chunk upper = _chunks[chunk + 1];
+                System.arraycopy(c._items, c._offset + half, upper._items, 0, _chunkSize - half);
+                System.arraycopy(c._timestamps, c._offset + half, upper._timestamps, 0, _chunkSize - half);
+                Arrays.fill(c._items, c._offset + half, c._offset + _chunkSize, null);
+                upper._size = _chunkSize - half;
+                c._size = half;
+                rebuildTree();
+                if(position > half) {
+                    chunk++;
+                    position -= half;
+                }
+            }
+            c = _chunks[chunk];
+        } else if(c._offset + c._size == _chunkSize) {
+            // reclaim the slots evicted from the head of the chunk
+            System.arraycopy(c._items, c._offset, c._items, 0, c._size);
+            System.arraycopy(c._timestamps, c._offset, c._timestamps, 0, c._size);
+            Arrays.fill(c._items, c._size, _chunkSize, null);
+            c._offset = 0;
+        }
+
+        int slot = c._offset + position;
+        System.arraycopy(c._items, slot, c._items, slot + 1, c._size - position);
+        System.arraycopy(c._timestamps, slot, c._timestamps, slot + 1, c._size - position);
+        c._items[slot] = item;
+        c._timestamps[slot] = timestamp;
+        c._size++;
+        resize(chunk, 1);
+        _size++;
+        return start(chunk) + position;
+    }
+
+    /**
+     * Makes room in the directory for at least one more chunk.
+     */
+    private void ensureDirectory() {
+        if(_first + _count < _chunks.length)
+            return;
+        if(_first > 0 && _count < _chunks.length / 2) {
+            // reclaim the directory slots of evicted chunks
+            System.arraycopy(_chunks, _first, _chunks, 0, _count);
+            Arrays.fill(_chunks, _count, _first + _count, null);
+            _first = 0;
+        } else {
+            _chunks = Arrays.copyOf(_chunks, _chunks.length * 2);
+        }
+        rebuildTree();
+    }
+
+    /**
+     * Inserts a new, empty chunk into the directory at the parameter index. The directory must have room for it. A
+     * chunk inserted before the last chunk moves the later chunks, and the tree must be rebuilt once their sizes are
+     * final.
+     */
+    private void insertChunk(int index) {
+        int end = _first + _count;
+        System.arraycopy(_chunks, index, _chunks, index + 1, end - index);
+        _chunks[index] = new Chunk(_chunkSize);
+        _count++;
+    }
+
+    @Override
+    public void removeFirst(int count) {
+        if(count <= 0)
+            return;
+        if(count > _size)
+            throw new IndexOutOfBoundsException("Count: " + count + ", Size: " + _size);
+        _size -= count;
+        _cached = -1;
+        while(count > 0) {
+            Chunk c = _chunks[_first];
+            if(count >= c._size) {
+                // release the whole chunk
+                count -= c._size;
+                resize(_first, -c._size);
+                _chunks[_first] = null;
+                _first++;
+                _count--;
+            } else {
+                Arrays.fill(c._items, c._offset, c._offset + count, null);
+                c._offset += count;
+                c._size -= count;
+                resize(_first, -count);
+                count = 0;
+            }
+        }
+        if(_count == 0)
+            _first = 0;
+    }
+
+    @Override
+    public int lowerBound(int fromIndex, long time) {
+        if(fromIndex >= _size)
+            return _size;
+        long located = locate(fromIndex);
+        int chunk = (int)(located >>> 32);
+        int start = (int)located;
+        int last = _first + _count - 1;
+        if(_chunks[chunk].last() < time) {
+            // the first later chunk holding an item at or after the time
+            int low = chunk + 1, high = last + 1;
+            while(low < high) {
+                int mid = (low + high) >>> 1;
+                if(_chunks[mid].last() >= time)
+                    high = mid;
+                else
+                    low = mid + 1;
+            }
+            if(low > last)
+                return _size;
+            chunk = low;
+            start = start(chunk);
+        }
+
+        Chunk c = _chunks[chunk];
+        int from = c._offset + Math.max(0, fromIndex - start);
+        int slot = Utils.lowerBound(c._timestamps, from, c._offset + c._size, time);
+        return start + slot - c._offset;
+    }
+}
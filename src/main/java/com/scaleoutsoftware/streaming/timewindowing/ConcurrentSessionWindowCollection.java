@@ -0,0 +1,59 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.util.List;
+
+/**
+ * A SessionWindowCollection that accepts items from multiple producer threads. Producers add items to striped buffers
+ * without contending on the collection, and the buffered items are sorted and merged into the source collection as a
+ * single batch when the consumer iterates the collection, reads an aggregation, or calls drain(). Only one thread may
+ * consume the collection at a time.
+ */
+public class ConcurrentSessionWindowCollection<T> extends SessionWindowCollection<T> {
+    /**
+     * Instantiates a new ConcurrentSessionWindowCollection
+     * @param source the underlying source.
+     * @param selector the selector used to pull a timestamp from an item in the source collection and subsequent insertions
+     * @param startTime the first time an object can be in a time window -- items before the start time will be evicted from the source collection.
+     * @param timeout the minimum amount of time between session window ranges
+     */
+    public ConcurrentSessionWindowCollection(List<T> source, TimestampSelector<T> selector, long startTime, long timeout) {
+        super(source, selector, startTime, timeout);
+        enableConcurrentIngestion();
+    }
+
+    /**
+     * Instantiates a new ConcurrentSessionWindowCollection over an EventStore
+     * @param store the underlying time-ordered store.
+     * @param selector the selector used to pull a timestamp from an item on insertion
+     * @param startTime the first time an object can be in a time window -- items before the start time will be evicted from the store.
+     * @param timeout the minimum amount of time between session window ranges
+     */
+    public ConcurrentSessionWindowCollection(EventStore<T> store, TimestampSelector<T> selector, long startTime, long timeout) {
+        super(store, selector, startTime, timeout);
+        enableConcurrentIngestion();
+    }
+
+    /**
+     * Moves the items added by producer threads into the source collection. The collection is drained automatically
+     * when it is iterated. Producers are never blocked, so items are buffered without bound until the next drain; a
+     * consumer that reads the collection rarely should call drain() periodically to bound the memory the buffers hold.
+     */
+    public void drain() {
+        drainPending();
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.util.*;
+
+/**
+ * Maintains the aggregates of the windows of a CountSlidingWindowCollection. Items are accumulated into panes of
+ * gcd(window size, step) consecutive items, counted from the first item ever added; every window is a run of whole
+ * panes. An appended item is accumulated into the last pane. An item inserted out of order shifts the items after it
+ * into later panes, so the panes from its position onwards are rebuilt from the store.
+ */
+class CountPaneAccumulators<T, A, R> implements Iterable<WindowAggregate<R>> {
+    final CountSlidingWindowCollection<T> _collection;
+    final WindowAggregator<? super T, A, R> _aggregator;
+    final int _pane;
+    // the accumulator of pane _base + i is _panes.get(i)
+    final ArrayList<A> _panes = new ArrayList<>();
+    long _base;
+
+    CountPaneAccumulators(CountSlidingWindowCollection<T> collection, WindowAggregator<? super T, A, R> aggregator) {
+        _collection = collection;
+        _aggregator = aggregator;
+        _pane       = gcd(collection._windowSize, collection._every);
+        _base       = collection._evicted / _pane;
+        rebuild(collection._evicted);
+    }
+
+    private static int gcd(int a, int b) {
+        while(b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * Called after an item has been inserted with the parameter sequence number.
+     */
+    void onInsert(long sequence, boolean appended) {
+        if(!appended) {
+            rebuild(sequence);
+            return;
+        }
+        int pane = (int)(sequence / _pane - _base);
+        if(pane == _panes.size())
+            _panes.add(_aggregator.createAccumulator());
+        _panes.set(pane, _aggregator.accumulate(_panes.get(pane), _collection._store.get(_collection._store.size() - 1)));
+    }
+
+    /**
+     * Called after the items before the parameter sequence number have been evicted. Panes are dropped in batches so
+     * that eviction costs O(1) amortized.
+     */
+    void onEvict(long evicted) {
+        long firstLive = evicted / _pane;
+        int dead = (int)Math.min(firstLive - _base, _panes.size());
+        if(dead > 0 && dead >= _panes.size() / 2) {
+            _panes.subList(0, dead).clear();
+            _base += dead;
+        }
+    }
+
+    /**
+     * Rebuilds the panes that hold the items from the parameter sequence number onwards.
+     */
+    private void rebuild(long sequence) {
+        CountSlidingWindowCollection<T> collection = _collection;
+        long first = Math.max(sequence / _pane, _base);
+        _panes.subList((int)(first - _base), _panes.size()).clear();
+        int size = collection._store.size();
+        for(int i = (int)Math.max(0, first * _pane - collection._evicted); i < size; i++) {
+            int pane = (int)((collection._evicted + i) / _pane - _base);
+            while(pane >= _panes.size())
+                _panes.add(_aggregator.createAccumulator());
+            _panes.set(pane, _aggregator.accumulate(_panes.get(pane), collection._store.get(i)));
+        }
+    }
+
+    @Override
+    public Iterator<WindowAggregate<R>> iterator() {
+        final CountSlidingWindowCollection<T> collection = _collection;
+        final long total = collection._evicted + collection._store.size();
+        return new Iterator<WindowAggregate<R>>() {
+            long _start = collection.firstWindowStart();
+
+            @Override
+            public boolean hasNext() {
+                return _start + collection._windowSize <= total;
+            }
+
+            @Override
+            public WindowAggregate<R> next() {
+                if(!hasNext())
+                    throw new NoSuchElementException();
+                A acc = _aggregator.createAccumulator();
+                int firstPane = (int)(_start / _pane - _base);
+                for(int i = 0; i < collection._windowSize / _pane; i++) {
+                    acc = _aggregator.combine(acc, _panes.get(firstPane + i));
+                }
+                int from = (int)(_start - collection._evicted);
+                _start += collection._every;
+                return new PaneAccumulators.AggregateWindow<>(collection._store.getTimestamp(from),
+                        collection._store.getTimestamp(from + collection._windowSize - 1) + 1, _aggregator.getResult(acc));
+            }
+        };
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.util.*;
+
+/**
+ * The CountSlidingWindowCollection holds items in chronological order as an iterable collection of windows of a fixed
+ * number of consecutive items, such as the last 20 readings of a sensor. A window starts every given number of items,
+ * counted from the first item ever added, so evicting items never shifts the windows that remain. Only complete windows
+ * are iterated.
+ *
+ * With a RingBufferEventStore and a bound on the number of retained items, appending an item and evicting the oldest
+ * item both cost O(1).
+ */
+public class CountSlidingWindowCollection<T> implements Iterable<TimeWindow<T>> {
+    final EventStore<T> _store;
+    final TimestampSelector<T> _selector;
+    final int _windowSize;
+    final int _every;
+    final int _maxItems;
+    // the number of items evicted from the head of the store; the item at index i is the (_evicted + i)-th item added
+    long _evicted;
+    final List<CountPaneAccumulators<T, ?, ?>> _aggregations = new ArrayList<>();
+
+    /**
+     * Instantiates a new CountSlidingWindowCollection that retains every item.
+     * @param source the underlying source collection
+     * @param selector the interface used to select a timestamp from an item
+     * @param windowSize the number of items in a window
+     * @param every the number of items between the first items of consecutive windows
+     */
+    public CountSlidingWindowCollection(List<T> source, TimestampSelector<T> selector, int windowSize, int every) {
+        this(new ListEventStore<>(source, selector), selector, windowSize, every, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Instantiates a new CountSlidingWindowCollection over an EventStore.
+     * @param store the underlying time-ordered store
+     * @param selector the interface used to select a timestamp from an item
+     * @param windowSize the number of items in a window
+     * @param every the number of items between the first items of consecutive windows
+     * @param maxItems the number of most recent items retained -- older items are evicted from the store
+     */
+    public CountSlidingWindowCollection(EventStore<T> store, TimestampSelector<T> selector, int windowSize, int every, int maxItems) {
+        if(windowSize <= 0 || every <= 0)
+            throw new IllegalArgumentException("Window size and step must be positive.");
+        if(maxItems <= 0)
+            throw new IllegalArgumentException("The number of retained items must be positive.");
+        // fewer retained items than a window holds would evict every window before it is complete
+        if(maxItems < windowSize)
+            throw new IllegalArgumentException("The number of retained items cannot be less than the window size.");
+        _store      = store;
+        _selector   = selector;
+        _windowSize = windowSize;
+        _every      = every;
+        _maxItems   = maxItems;
+
+        evict();
+    }
+
+    /**
+     * Adds an item in chronological order, evicting the oldest item if the collection is full.
+     * @param item the item to add
+     */
+    public void add(T item) {
+        long timestamp = _selector.select(item);
+        int size = _store.size();
+        int index = _store.add(item, timestamp);
+        for(int i = 0; i < _aggregations.size(); i++) {
+            _aggregations.get(i).onInsert(_evicted + index, index == size);
+        }
+        evict();
+    }
+
+    /**
+     * Maintains the result of an aggregator for every window of this collection as items are added. Items are
+     * accumulated into panes of gcd(window size, step) items, so an appended item costs O(1) and the result of a window
+     * is combined from its panes when it is read.
+     * @param aggregator the aggregator applied to the items of each window
+     * @param <A> the type of the accumulator
+     * @param <R> the type of the aggregate result
+     * @return an iterable collection of the aggregates of the complete windows, in the order of the windows
+     */
+    public <A, R> Iterable<WindowAggregate<R>> addAggregation(WindowAggregator<? super T, A, R> aggregator) {
+        CountPaneAccumulators<T, A, R> aggregation = new CountPaneAccumulators<>(this, aggregator);
+        _aggregations.add(aggregation);
+        return aggregation;
+    }
+
+    /**
+     * Returns the number of items retained by this collection.
+     * @return the number of items
+     */
+    public int size() {
+        return _store.size();
+    }
+
+    private void evict() {
+        int excess = _store.size() - _maxItems;
+        if(excess > 0) {
+            _store.removeFirst(excess);
+            _evicted += excess;
+            for(int i = 0; i < _aggregations.size(); i++) {
+                _aggregations.get(i).onEvict(_evicted);
+            }
+        }
+    }
+
+    /**
+     * Returns the sequence number of the first item of the first complete window that is fully retained.
+     */
+    long firstWindowStart() {
+        return (_evicted + _every - 1) / _every * _every;
+    }
+
+    @Override
+    public Iterator<TimeWindow<T>> iterator() {
+        final long total = _evicted + _store.size();
+        return new Iterator<TimeWindow<T>>() {
+            long _start = firstWindowStart();
+
+            @Override
+            public boolean hasNext() {
+                return _start + _windowSize <= total;
+            }
+
+            @Override
+            public TimeWindow<T> next() {
+                if(!hasNext())
+                    throw new NoSuchElementException();
+                int from = (int)(_start - _evicted);
+                _start += _every;
+                return new CountTimeWindow<>(_store, from, from + _windowSize);
+            }
+        };
+    }
+}
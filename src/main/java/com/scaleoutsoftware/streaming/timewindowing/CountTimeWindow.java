@@ -0,0 +1,66 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * A window of a fixed number of consecutive items. The window is a view over a range of indices in the source
+ * collection; items are not copied. The start time of the window is the timestamp of its first item and the end time
+ * is one past the timestamp of its last item.
+ */
+class CountTimeWindow<T> implements TimeWindow<T> {
+    final EventStore<T> _source;
+    final int _from;
+    final int _to;
+
+    CountTimeWindow(EventStore<T> source, int from, int to) {
+        _source = source;
+        _from   = from;
+        _to     = to;
+    }
+
+    @Override
+    public long getStartTime() {
+        return _source.getTimestamp(_from);
+    }
+
+    @Override
+    public long getEndTime() {
+        return _source.getTimestamp(_to - 1) + 1;
+    }
+
+    @Override
+    public int size() {
+        return _to - _from;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return _source.subList(_from, _to).iterator();
+    }
+
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        _source.subList(_from, _to).forEach(action);
+    }
+
+    @Override
+    public Spliterator<T> spliterator() {
+        return _source.subList(_from, _to).spliterator();
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.util.List;
+
+/**
+ * The CountTumblingWindowCollection holds items in chronological order as an iterable collection of consecutive,
+ * non-overlapping windows of a fixed number of items.
+ */
+public class CountTumblingWindowCollection<T> extends CountSlidingWindowCollection<T> {
+
+    /**
+     * Instantiates a new CountTumblingWindowCollection that retains every item.
+     * @param source the underlying source collection
+     * @param selector the interface used to select a timestamp from an item
+     * @param windowSize the number of items in a window
+     */
+    public CountTumblingWindowCollection(List<T> source, TimestampSelector<T> selector, int windowSize) {
+        super(source, selector, windowSize, windowSize);
+    }
+
+    /**
+     * Instantiates a new CountTumblingWindowCollection over an EventStore.
+     * @param store the underlying time-ordered store
+     * @param selector the interface used to select a timestamp from an item
+     * @param windowSize the number of items in a window
+     * @param maxItems the number of most recent items retained -- older items are evicted from the store
+     */
+    public CountTumblingWindowCollection(EventStore<T> store, TimestampSelector<T> selector, int windowSize, int maxItems) {
+        super(store, selector, windowSize, windowSize, maxItems);
+    }
+}
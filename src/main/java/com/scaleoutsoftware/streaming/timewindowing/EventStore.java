@@ -0,0 +1,116 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.util.List;
+
+/**
+ * A time-ordered sequence of items, along with their timestamps, that can be transformed into time windows. A window
+ * collection constructed over an EventStore pulls the timestamp of each item with its selector once, when the item is
+ * added, and hands it to the store. Windows are views over ranges of indices in the store.
+ * @param <T> the type of the items in the store
+ */
+public interface EventStore<T> {
+
+    /**
+     * Returns the number of items in the store.
+     * @return the number of items in the store.
+     */
+    int size();
+
+    /**
+     * Returns the item at the parameter index.
+     * @param index the index of the item
+     * @return the item at the index
+     */
+    T get(int index);
+
+    /**
+     * Returns the timestamp of the item at the parameter index.
+     * @param index the index of the item
+     * @return the timestamp of the item at the index
+     */
+    long getTimestamp(int index);
+
+    /**
+     * Inserts an item in chronological order. Items with equal timestamps are kept in insertion order.
+     * @param item the item to add
+     * @param timestamp the timestamp of the item
+     * @return the index the item was inserted at
+     */
+    int add(T item, long timestamp);
+
+    /**
+     * Inserts a batch of items in chronological order. The batch must be sorted by timestamp. Items with equal
+     * timestamps are kept in insertion order, after any items already in the store.
+     * @param items the items to add, sorted by timestamp
+     * @param timestamps the timestamps of the items: timestamps[i] is the timestamp of items.get(i)
+     */
+    default void addAll(List<? extends T> items, long[] timestamps) {
+        for(int i = 0; i < items.size(); i++) {
+            add(items.get(i), timestamps[i]);
+        }
+    }
+
+    /**
+     * Removes the oldest items from the store.
+     * @param count the number of items to remove from the head of the store
+     */
+    void removeFirst(int count);
+
+    /**
+     * Returns a view of the items between the parameter indices.
+     * @param fromIndex the first index (inclusive)
+     * @param toIndex the last index (exclusive)
+     * @return a list view of the items in the range
+     */
+    default List<T> subList(int fromIndex, int toIndex) {
+        return new StoreListView<>(this, fromIndex, toIndex);
+    }
+
+    /**
+     * Returns the index of the first item at or after the parameter index whose timestamp is not earlier than the
+     * parameter time. The boundary is located with an exponential (galloping) search from the starting index followed
+     * by a binary search, so locating a boundary costs O(log d) where d is the distance from the starting index.
+     * @param fromIndex the index to start searching from
+     * @param time the time to search for
+     * @return the index of the first item with a timestamp greater than or equal to the time, or the size of the
+     * store if there is no such item
+     */
+    default int lowerBound(int fromIndex, long time) {
+        int size = size();
+        int low = fromIndex;
+        int step = 1;
+        int high = fromIndex;
+        // gallop forward until we pass the time, then binary search the last step
+        while(high < size && getTimestamp(high) < time) {
+            low = high + 1;
+            high = fromIndex + step;
+            step <<= 1;
+        }
+        if(high > size)
+            high = size;
+
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(getTimestamp(mid) < time)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Buffers items added by multiple producer threads until a single consumer drains them into a window collection.
+ * Items are appended to one of several stripes chosen by the producing thread, so producers running on different
+ * cores rarely touch the same lock. Draining moves the contents of every stripe into a single batch.
+ *
+ * The stripes are unbounded: producers never block or drain on their own, since the store may only be modified by the
+ * consumer, so the items held between drains are bounded only by how often the consumer drains.
+ */
+class IngestBuffer<T> {
+
+    /**
+     * A buffer of pending items, guarded by its own monitor.
+     */
+    static class Stripe<T> {
+        ArrayList<T> _items = new ArrayList<>();
+    }
+
+    final Stripe<T>[] _stripes;
+    final int _mask;
+
+    IngestBuffer() {
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1) << 1);
+        @SuppressWarnings("unchecked")
+        Stripe<T>[] array = (Stripe<T>[])new Stripe<?>[stripes];
+        _stripes = array;
+        for(int i = 0; i < stripes; i++) {
+            _stripes[i] = new Stripe<>();
+        }
+        _mask = stripes - 1;
+    }
+
+    private Stripe<T> stripe() {
+        return _stripes[(int)Thread.currentThread().getId() & _mask];
+    }
+
+    void add(T item) {
+        Stripe<T> stripe = stripe();
+        synchronized(stripe) {
+            stripe._items.add(item);
+        }
+    }
+
+    void addAll(Collection<? extends T> items) {
+        Stripe<T> stripe = stripe();
+        synchronized(stripe) {
+            stripe._items.addAll(items);
+        }
+    }
+
+    /**
+     * Moves every pending item into the parameter batch.
+     * @param batch the list that receives the pending items
+     */
+    void drainTo(List<T> batch) {
+        for(Stripe<T> stripe : _stripes) {
+            synchronized(stripe) {
+                if(!stripe._items.isEmpty()) {
+                    batch.addAll(stripe._items);
+                    stripe._items.clear();
+                }
+            }
+        }
+    }
+}
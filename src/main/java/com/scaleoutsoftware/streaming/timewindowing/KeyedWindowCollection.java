@@ -0,0 +1,606 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The KeyedWindowCollection holds the time windows of many keys (for example patients or devices) in one shared,
+ * compact structure instead of one window collection per key. Keys are held in an open-addressing table and per-key
+ * state is a handful of primitive slots in shared arrays, so an idle key costs tens of bytes. Items are held in a
+ * shared arena of slots, linked into a time-ordered list per key; released slots are reused.
+ *
+ * The windows of a single key can be iterated like the windows of the other collections, and pollReadyWindows()
+ * iterates the completed windows of every key in bulk, releasing the items that no later window needs. Keys are kept
+ * in a min-heap by the earliest time their next window can complete, so a poll only visits the keys that have a
+ * window to emit rather than scanning every key.
+ */
+public class KeyedWindowCollection<K, T> {
+    static final int NONE = -1;
+
+    final Function<? super T, ? extends K> _keySelector;
+    final TimestampSelector<T> _selector;
+    final long _startTime;
+    final long _windowDuration;
+    final long _every;
+    // a positive timeout makes this a collection of session windows
+    final long _timeout;
+
+    // open-addressing table of key ids + 1; 0 marks an empty slot
+    int[] _table;
+    int _keyCount;
+
+    // per-key state, indexed by key id
+    Object[] _keys;
+    int[] _headSlot;
+    int[] _tailSlot;
+    // items before this time belong to windows that have already been polled
+    long[] _closedBefore;
+    // a lower bound of the time at which the key's next window completes, or Long.MAX_VALUE if the key has no item
+    long[] _readyAt;
+    int _keyIds;
+    int[] _freeKeyIds;
+    int _freeKeyIdCount;
+    // sliding windows that end before this time have been polled for every key, including keys that were not visited
+    long _polledBefore;
+
+    // binary min-heap of (ready time, key id) entries; an entry whose time differs from _readyAt of its key is stale
+    long[] _heapTimes;
+    int[] _heapIds;
+    int _heapSize;
+    // the ids of the keys visited by the current poll, rescheduled once the poll is done
+    int[] _visited;
+
+    // arena of item slots; free slots are chained through _nextSlot
+    Object[] _items;
+    long[] _timestamps;
+    int[] _nextSlot;
+    int[] _prevSlot;
+    int _slots;
+    int _freeSlot;
+    int _itemCount;
+
+    KeyedWindowCollection(Function<? super T, ? extends K> keySelector, TimestampSelector<T> selector, long startTime,
+                          long windowDuration, long every, long timeout) {
+        _keySelector    = keySelector;
+        _selector       = selector;
+        _startTime      = startTime;
+        _windowDuration = windowDuration;
+        _every          = every;
+        _timeout        = timeout;
+
+        _table          = new int[16];
+        _keys           = new Object[8];
+        _headSlot       = new int[8];
+        _tailSlot       = new int[8];
+        _closedBefore   = new long[8];
+        _readyAt        = new long[8];
+        _freeKeyIds     = new int[8];
+        _polledBefore   = startTime;
+
+        _heapTimes      = new long[16];
+        _heapIds        = new int[16];
+        _visited        = new int[16];
+
+        _items          = new Object[16];
+        _timestamps     = new long[16];
+        _nextSlot       = new int[16];
+        _prevSlot       = new int[16];
+        _freeSlot       = NONE;
+    }
+
+    /**
+     * Instantiates a new KeyedWindowCollection of sliding windows.
+     * @param keySelector the function used to pull a key from an item
+     * @param selector the selector used to pull a timestamp from an item
+     * @param windowDuration the duration of a time window
+     * @param every the time between the starting point of each time window
+     * @param startTime the first time an object can be in a time window -- items before the start time are discarded.
+     * @param <K> the type of the keys
+     * @param <T> the type of the items
+     * @return a new KeyedWindowCollection
+     */
+    public static <K, T> KeyedWindowCollection<K, T> sliding(Function<? super T, ? extends K> keySelector, TimestampSelector<T> selector,
+                                                            long windowDuration, long every, long startTime) {
+        return new KeyedWindowCollection<>(keySelector, selector, startTime, windowDuration, every, 0);
+    }
+
+    /**
+     * Instantiates a new KeyedWindowCollection of tumbling windows.
+     * @param keySelector the function used to pull a key from an item
+     * @param selector the selector used to pull a timestamp from an item
+     * @param windowDuration the duration of a time window
+     * @param startTime the first time an object can be in a time window -- items before the start time are discarded.
+     * @param <K> the type of the keys
+     * @param <T> the type of the items
+     * @return a new KeyedWindowCollection
+     */
+    public static <K, T> KeyedWindowCollection<K, T> tumbling(Function<? super T, ? extends K> keySelector, TimestampSelector<T> selector,
+                                                             long windowDuration, long startTime) {
+        return new KeyedWindowCollection<>(keySelector, selector, startTime, windowDuration, windowDuration, 0);
+    }
+
+    /**
+     * Instantiates a new KeyedWindowCollection of session windows.
+     * @param keySelector the function used to pull a key from an item
+     * @param selector the selector used to pull a timestamp from an item
+     * @param startTime the first time an object can be in a time window -- items before the start time are discarded.
+     * @param timeout the minimum amount of time between session window ranges
+     * @param <K> the type of the keys
+     * @param <T> the type of the items
+     * @return a new KeyedWindowCollection
+     */
+    public static <K, T> KeyedWindowCollection<K, T> session(Function<? super T, ? extends K> keySelector, TimestampSelector<T> selector,
+                                                            long startTime, long timeout) {
+        if(timeout <= 0)
+            throw new IllegalArgumentException("Session timeout must be positive.");
+        return new KeyedWindowCollection<>(keySelector, selector, startTime, 0, 0, timeout);
+    }
+
+    /**
+     * Returns the number of keys in this collection.
+     * @return the number of keys in this collection
+     */
+    public int keyCount() {
+        return _keyCount;
+    }
+
+    /**
+     * Returns the number of items held for all keys.
+     * @return the number of items held for all keys
+     */
+    public int itemCount() {
+        return _itemCount;
+    }
+
+    /**
+     * Adds an item to the windows of its key in chronological order. Items before the start time of the collection,
+     * or belonging only to windows of their key that have already been polled, are discarded.
+     * @param item the item to add
+     */
+    public void add(T item) {
+        long timestamp = _selector.select(item);
+        if(timestamp < _startTime)
+            return;
+        int id = keyId(_keySelector.apply(item), true);
+        if(timestamp < _closedBefore[id] || timestamp < _polledBefore)
+            return;
+
+        int slot = allocateSlot();
+        _items[slot] = item;
+        _timestamps[slot] = timestamp;
+
+        // walk back from the newest item of the key; in-order items are appended
+        int after = _tailSlot[id];
+        while(after != NONE && timestamp < _timestamps[after])
+            after = _prevSlot[after];
+        int before = after == NONE ? _headSlot[id] : _nextSlot[after];
+        _prevSlot[slot] = after;
+        _nextSlot[slot] = before;
+        if(after == NONE)
+            _headSlot[id] = slot;
+        else
+            _nextSlot[after] = slot;
+        if(before == NONE)
+            _tailSlot[id] = slot;
+        else
+            _prevSlot[before] = slot;
+        _itemCount++;
+
+        // only a new oldest item can make a window of the key complete earlier
+        if(after == NONE)
+            schedule(id, readyBound(timestamp));
+    }
+
+    /**
+     * Removes a key and all of its items from the collection.
+     * @param key the key to remove
+     * @return true if the key was in the collection
+     */
+    public boolean remove(K key) {
+        int id = keyId(key, false);
+        if(id == NONE)
+            return false;
+        releaseBefore(id, Long.MAX_VALUE);
+        _readyAt[id] = Long.MAX_VALUE;
+
+        // backward-shift deletion keeps every probe sequence unbroken without tombstones
+        int mask = _table.length - 1;
+        int index = hash(key) & mask;
+        while(_table[index] != id + 1)
+            index = (index + 1) & mask;
+        int hole = index;
+        while(true) {
+            index = (index + 1) & mask;
+            if(_table[index] == 0)
+                break;
+            int home = hash(_keys[_table[index] - 1]) & mask;
+            // move the entry into the hole unless its home slot lies cyclically in (hole, index]
+            if(((index - home) & mask) >= ((index - hole) & mask)) {
+                _table[hole] = _table[index];
+                hole = index;
+            }
+        }
+        _table[hole] = 0;
+
+        _keys[id] = null;
+        if(_freeKeyIdCount == _freeKeyIds.length)
+            _freeKeyIds = Arrays.copyOf(_freeKeyIds, _freeKeyIdCount * 2);
+        _freeKeyIds[_freeKeyIdCount++] = id;
+        _keyCount--;
+        return true;
+    }
+
+    /**
+     * Returns the windows of a key, from the window holding the key's oldest item to its most recent item. Windows
+     * are views over the items of the key and are valid until the collection is modified.
+     * @param key the key
+     * @return an iterable collection of the key's windows
+     */
+    public Iterable<TimeWindow<T>> windows(K key) {
+        int id = keyId(key, false);
+        if(id == NONE || _headSlot[id] == NONE)
+            return Collections.emptyList();
+        List<TimeWindow<T>> windows = new ArrayList<>();
+        forEachWindow(id, Long.MAX_VALUE, true, windows::add);
+        return windows;
+    }
+
+    /**
+     * Iterates the completed windows of every key that hold at least one item and have not been polled before. A
+     * sliding or tumbling window is complete once its end time is at or before the parameter time; a session window is
+     * complete once the parameter time is more than the timeout past its last item. After a key's windows are polled,
+     * the items that no later window of the key needs are released, and items that arrive for polled windows are
+     * discarded. The windows passed to the action are only valid for the duration of the call.
+     * @param time the current time, such as the time of the most recent item or a watermark
+     * @param action the action to perform on each key and window
+     */
+    @SuppressWarnings("unchecked")
+    public void pollReadyWindows(long time, BiConsumer<? super K, ? super TimeWindow<T>> action) {
+        int visited = 0;
+        while(_heapSize > 0 && _heapTimes[0] <= time) {
+            long readyAt = _heapTimes[0];
+            int id = _heapIds[0];
+            pop();
+            if(readyAt != _readyAt[id] || _headSlot[id] == NONE)
+                continue;
+            _readyAt[id] = Long.MAX_VALUE;
+
+            K key = (K)_keys[id];
+            long closedBefore = forEachWindow(id, time, false, window -> action.accept(key, window));
+            _closedBefore[id] = Math.max(_closedBefore[id], closedBefore);
+            releaseBefore(id, _closedBefore[id]);
+            if(_headSlot[id] != NONE) {
+                if(visited == _visited.length)
+                    _visited = Arrays.copyOf(_visited, visited * 2);
+                _visited[visited++] = id;
+            }
+        }
+        for(int i = 0; i < visited; i++) {
+            int id = _visited[i];
+            schedule(id, _timeout > 0 ? sessionReady(id) : readyBound(_timestamps[_headSlot[id]]));
+        }
+        // keys that were not visited have no completed window, and nothing before the completed windows to release
+        if(_timeout == 0)
+            _polledBefore = Math.max(_polledBefore, completedBefore(time));
+    }
+
+    /**
+     * Returns a lower bound of the time at which a window holding the parameter oldest item of a key completes: the end
+     * of the first sliding window that ends after the item, or the time the timeout has passed the item.
+     */
+    private long readyBound(long oldest) {
+        if(_timeout > 0)
+            return afterTimeout(oldest);
+        long window = Math.max(0, Math.floorDiv(oldest - _startTime - _windowDuration, _every) + 1);
+        return _startTime + window * _every + _windowDuration;
+    }
+
+    /**
+     * Returns the time at which the first session of a key completes.
+     */
+    private long sessionReady(int id) {
+        int slot = _headSlot[id];
+        long end = _timestamps[slot];
+        for(slot = _nextSlot[slot]; slot != NONE && _timestamps[slot] - end <= _timeout; slot = _nextSlot[slot])
+            end = _timestamps[slot];
+        return afterTimeout(end);
+    }
+
+    /**
+     * Returns the first time more than the timeout past the parameter time, saturating at Long.MAX_VALUE.
+     */
+    private long afterTimeout(long time) {
+        long bound = time + _timeout;
+        return bound < time || bound == Long.MAX_VALUE ? Long.MAX_VALUE : bound + 1;
+    }
+
+    /**
+     * Lowers the ready time of a key to the parameter time and queues the key in the heap.
+     */
+    private void schedule(int id, long readyAt) {
+        if(readyAt >= _readyAt[id])
+            return;
+        _readyAt[id] = readyAt;
+        if(_heapSize > 2 * _keyCount + 16) {
+            // drop the stale entries by rebuilding the heap from the ready time of every key
+            _heapSize = 0;
+            for(int key = 0; key < _keyIds; key++) {
+                if(_keys[key] != null && _readyAt[key] != Long.MAX_VALUE && key != id)
+                    push(_readyAt[key], key);
+            }
+        }
+        push(readyAt, id);
+    }
+
+    private void push(long time, int id) {
+        if(_heapSize == _heapTimes.length) {
+            _heapTimes  = Arrays.copyOf(_heapTimes, _heapSize * 2);
+            _heapIds    = Arrays.copyOf(_heapIds, _heapSize * 2);
+        }
+        int index = _heapSize++;
+        while(index > 0) {
+            int parent = (index - 1) >>> 1;
+            if(_heapTimes[parent] <= time)
+                break;
+            _heapTimes[index] = _heapTimes[parent];
+            _heapIds[index] = _heapIds[parent];
+            index = parent;
+        }
+        _heapTimes[index] = time;
+        _heapIds[index] = id;
+    }
+
+    private void pop() {
+        long time = _heapTimes[--_heapSize];
+        int id = _heapIds[_heapSize];
+        int index = 0;
+        while(true) {
+            int child = 2 * index + 1;
+            if(child >= _heapSize)
+                break;
+            if(child + 1 < _heapSize && _heapTimes[child + 1] < _heapTimes[child])
+                child++;
+            if(time <= _heapTimes[child])
+                break;
+            _heapTimes[index] = _heapTimes[child];
+            _heapIds[index] = _heapIds[child];
+            index = child;
+        }
+        _heapTimes[index] = time;
+        _heapIds[index] = id;
+    }
+
+    /**
+     * Performs an action on the non-empty windows of a key that end at or before the parameter time.
+     * @return the time before which no later window of the key can hold an item
+     */
+    private long forEachWindow(int id, long time, boolean includeOpen, Consumer<TimeWindow<T>> action) {
+        int slot = _headSlot[id];
+        long last = _timestamps[_tailSlot[id]];
+        if(_timeout > 0) {
+            long closedBefore = _closedBefore[id];
+            while(slot != NONE) {
+                int first = slot, size = 1;
+                long end = _timestamps[slot];
+                slot = _nextSlot[slot];
+                while(slot != NONE && _timestamps[slot] - end <= _timeout) {
+                    end = _timestamps[slot];
+                    slot = _nextSlot[slot];
+                    size++;
+                }
+                if(!includeOpen && end + _timeout >= time)
+                    break;
+                action.accept(new KeyedWindow<>(this, _timestamps[first], end, first, size));
+                closedBefore = end + _timeout + 1;
+            }
+            return closedBefore;
+        }
+
+        // the first window holding the key's oldest item
+        long window = Math.max(Math.floorDiv(Math.max(_closedBefore[id], _polledBefore) - _startTime, _every),
+                Math.max(0, Math.floorDiv(_timestamps[slot] - _startTime - _windowDuration, _every) + 1));
+        long end = last + 1;
+        while(slot != NONE) {
+            long windowStart = _startTime + window * _every;
+            long windowEnd = windowStart + _windowDuration;
+            if(!includeOpen && windowEnd > time)
+                break;
+            if(windowStart >= end)
+                break;
+
+            while(slot != NONE && _timestamps[slot] < windowStart)
+                slot = _nextSlot[slot];
+            int size = 0;
+            for(int s = slot; s != NONE && _timestamps[s] < windowEnd; s = _nextSlot[s])
+                size++;
+            if(size > 0)
+                action.accept(new KeyedWindow<>(this, windowStart, includeOpen ? Math.min(windowEnd, end) : windowEnd, slot, size));
+
+            // skip the empty windows before the next window holding an item
+            window++;
+            if(slot != NONE && size == 0)
+                window = Math.max(window, Math.floorDiv(_timestamps[slot] - _startTime - _windowDuration, _every) + 1);
+        }
+        return completedBefore(time);
+    }
+
+    /**
+     * Returns the start time of the first sliding window that ends after the parameter time; every earlier window
+     * has been completed.
+     */
+    private long completedBefore(long time) {
+        if(_timeout > 0 || time == Long.MAX_VALUE)
+            return time;
+        return Math.max(_startTime, _startTime + (Math.floorDiv(time - _startTime - _windowDuration, _every) + 1) * _every);
+    }
+
+    /**
+     * Releases the items of a key with timestamps before the parameter time.
+     */
+    private void releaseBefore(int id, long time) {
+        int slot = _headSlot[id];
+        while(slot != NONE && _timestamps[slot] < time) {
+            int next = _nextSlot[slot];
+            _items[slot] = null;
+            _nextSlot[slot] = _freeSlot;
+            _freeSlot = slot;
+            _itemCount--;
+            slot = next;
+        }
+        _headSlot[id] = slot;
+        if(slot == NONE)
+            _tailSlot[id] = NONE;
+        else
+            _prevSlot[slot] = NONE;
+    }
+
+    private int allocateSlot() {
+        if(_freeSlot != NONE) {
+            int slot = _freeSlot;
+            _freeSlot = _nextSlot[slot];
+            return slot;
+        }
+        if(_slots == _items.length) {
+            int capacity = _slots + (_slots >> 1);
+            _items      = Arrays.copyOf(_items, capacity);
+            _timestamps = Arrays.copyOf(_timestamps, capacity);
+            _nextSlot   = Arrays.copyOf(_nextSlot, capacity);
+            _prevSlot   = Arrays.copyOf(_prevSlot, capacity);
+        }
+        return _slots++;
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns the id of a key, optionally adding the key if it is not in the collection.
+     */
+    private int keyId(K key, boolean create) {
+        int mask = _table.length - 1;
+        int index = hash(key) & mask;
+        int entry;
+        while((entry = _table[index]) != 0) {
+            if(_keys[entry - 1].equals(key))
+                return entry - 1;
+            index = (index + 1) & mask;
+        }
+        if(!create)
+            return NONE;
+
+        int id;
+        if(_freeKeyIdCount > 0) {
+            id = _freeKeyIds[--_freeKeyIdCount];
+        } else {
+            if(_keyIds == _keys.length) {
+                int capacity = _keyIds * 2;
+                _keys           = Arrays.copyOf(_keys, capacity);
+                _headSlot       = Arrays.copyOf(_headSlot, capacity);
+                _tailSlot       = Arrays.copyOf(_tailSlot, capacity);
+                _closedBefore   = Arrays.copyOf(_closedBefore, capacity);
+                _readyAt        = Arrays.copyOf(_readyAt, capacity);
+            }
+            id = _keyIds++;
+        }
+        _keys[id] = key;
+        _headSlot[id] = NONE;
+        _tailSlot[id] = NONE;
+        _closedBefore[id] = _startTime;
+        _readyAt[id] = Long.MAX_VALUE;
+        _table[index] = id + 1;
+        if(++_keyCount * 2 > _table.length)
+            rehash();
+        return id;
+    }
+
+    private void rehash() {
+        int[] table = new int[_table.length * 2];
+        int mask = table.length - 1;
+        for(int entry : _table) {
+            if(entry != 0) {
+                int index = hash(_keys[entry - 1]) & mask;
+                while(table[index] != 0)
+                    index = (index + 1) & mask;
+                table[index] = entry;
+            }
+        }
+        _table = table;
+    }
+
+    /**
+     * A window of a single key: a run of linked item slots.
+     */
+    static class KeyedWindow<T> implements TimeWindow<T> {
+        final KeyedWindowCollection<?, T> _owner;
+        final long _startTime;
+        final long _endTime;
+        final int _first;
+        final int _size;
+
+        KeyedWindow(KeyedWindowCollection<?, T> owner, long startTime, long endTime, int first, int size) {
+            _owner      = owner;
+            _startTime  = startTime;
+            _endTime    = endTime;
+            _first      = first;
+            _size       = size;
+        }
+
+        @Override
+        public long getStartTime() {
+            return _startTime;
+        }
+
+        @Override
+        public long getEndTime() {
+            return _endTime;
+        }
+
+        @Override
+        public int size() {
+            return _size;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                int _slot = _first;
+                int _remaining = _size;
+
+                @Override
+                public boolean hasNext() {
+                    return _remaining > 0;
+                }
+
+                @Override
+                @SuppressWarnings("unchecked")
+                public T next() {
+                    if(_remaining == 0)
+                        throw new NoSuchElementException();
+                    T item = (T)_owner._items[_slot];
+                    _slot = _owner._nextSlot[_slot];
+                    _remaining--;
+                    return item;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An EventStore over a List owned by a window collection. The timestamp of every item is pulled with the selector
+ * exactly once, when the item is added, and kept in a parallel timestamp column that is used by every boundary search
+ * and eviction.
+ *
+ * The column is only kept in step with changes made through the store, and the List must not be modified other than
+ * through the window collection that owns it. As a safeguard the store checks the size of the source before it uses
+ * the column and re-pulls every timestamp if the size changed, so its own searches stay in bounds; state derived from
+ * the store by the collection, such as session boundaries and aggregations, is not rebuilt.
+ */
+class ListEventStore<T> implements EventStore<T> {
+    final List<T> _source;
+    final TimestampSelector<T> _selector;
+    // timestamps of the items in _source, stored at _timestamps[_head + index]
+    long[] _timestamps;
+    int _head;
+    // the size of _source when _timestamps was last in step with it
+    int _size;
+
+    /**
+     * Instantiates a new ListEventStore, pulling the timestamps of any items already in the source.
+     * @param source the time-ordered source collection
+     * @param selector the selector used to pull a timestamp from an item
+     */
+    ListEventStore(List<T> source, TimestampSelector<T> selector) {
+        _source     = source;
+        _selector   = selector;
+        pullTimestamps();
+    }
+
+    private void pullTimestamps() {
+        _timestamps = new long[Math.max(16, _source.size())];
+        _head       = 0;
+        _size       = 0;
+        for(T item : _source) {
+            _timestamps[_size++] = _selector.select(item);
+        }
+    }
+
+    /**
+     * Re-pulls the timestamp column if the source was resized other than through the store.
+     */
+    private void checkSource() {
+        if(_source.size() != _size)
+            pullTimestamps();
+    }
+
+    @Override
+    public int size() {
+        checkSource();
+        return _size;
+    }
+
+    @Override
+    public T get(int index) {
+        return _source.get(index);
+    }
+
+    @Override
+    public long getTimestamp(int index) {
+        checkSource();
+        return _timestamps[_head + index];
+    }
+
+    @Override
+    public int add(T item, long timestamp) {
+        checkSource();
+        int size = _size;
+        if(_head + size == _timestamps.length)
+            ensureCapacity(size + 1);
+
+        // walk back over any newer items; in-order items are appended without a comparison loop
+        int index = size;
+        while(index > 0 && timestamp < _timestamps[_head + index - 1])
+            index--;
+
+        if(index < size)
+            System.arraycopy(_timestamps, _head + index, _timestamps, _head + index + 1, size - index);
+        _timestamps[_head + index] = timestamp;
+        _source.add(index, item);
+        _size++;
+        return index;
+    }
+
+    @Override
+    public void addAll(List<? extends T> items, long[] timestamps) {
+        int count = items.size();
+        if(count == 0)
+            return;
+        checkSource();
+        int size = _size;
+        if(_head + size + count > _timestamps.length)
+            ensureCapacity(size + count);
+
+        // only the items newer than the oldest item in the batch need to be merged; the batch is appended after them
+        int from = Utils.upperBound(_timestamps, _head, _head + size, timestamps[0]) - _head;
+        List<T> tail = _source.subList(from, size);
+        List<T> merged = new ArrayList<>(size - from + count);
+        long[] tailTimestamps = Arrays.copyOfRange(_timestamps, _head + from, _head + size);
+        int i = 0, j = 0, slot = _head + from;
+        for(T item : tail) {
+            while(j < count && timestamps[j] < tailTimestamps[i]) {
+                merged.add(items.get(j));
+                _timestamps[slot++] = timestamps[j++];
+            }
+            merged.add(item);
+            _timestamps[slot++] = tailTimestamps[i++];
+        }
+        while(j < count) {
+            merged.add(items.get(j));
+            _timestamps[slot++] = timestamps[j++];
+        }
+        tail.clear();
+        _source.addAll(merged);
+        _size += count;
+    }
+
+    @Override
+    public void removeFirst(int count) {
+        if(count <= 0)
+            return;
+        checkSource();
+        _source.subList(0, count).clear();
+        _head += count;
+        _size -= count;
+        if(_size == 0)
+            _head = 0;
+    }
+
+    @Override
+    public List<T> subList(int fromIndex, int toIndex) {
+        checkSource();
+        return _source.subList(fromIndex, toIndex);
+    }
+
+    @Override
+    public int lowerBound(int fromIndex, long time) {
+        checkSource();
+        return Utils.lowerBound(_timestamps, _head + fromIndex, _head + _size, time) - _head;
+    }
+
+    private void ensureCapacity(int capacity) {
+        int size = _size;
+        if(capacity <= _timestamps.length / 2) {
+            // plenty of room once evicted slots at the head are reclaimed
+            System.arraycopy(_timestamps, _head, _timestamps, 0, size);
+        } else {
+            _timestamps = Arrays.copyOfRange(_timestamps, _head, _head + Math.max(capacity, _timestamps.length + (_timestamps.length >> 1)));
+        }
+        _head = 0;
+    }
+}
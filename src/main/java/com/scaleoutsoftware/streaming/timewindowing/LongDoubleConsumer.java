@@ -0,0 +1,31 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+/**
+ * Represents an operation that accepts a timestamp and a double value, the primitive specialization of a BiConsumer
+ * used to iterate the events of a LongDoubleTimeWindow without boxing.
+ */
+@FunctionalInterface
+public interface LongDoubleConsumer {
+
+    /**
+     * Performs this operation on the parameter event.
+     * @param timestamp the timestamp of the event
+     * @param value the value of the event
+     */
+    void accept(long timestamp, double value);
+}
@@ -0,0 +1,193 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * The LongDoubleSlidingWindowCollection holds a time series of (timestamp, double) events, such as heart rate
+ * readings, as an iterable collection of sliding windows. Events are stored in parallel long and double columns
+ * instead of as objects, so an event costs 16 bytes and no timestamp selector is called.
+ */
+public class LongDoubleSlidingWindowCollection implements Iterable<LongDoubleTimeWindow> {
+    final LongDoubleStore _store = new LongDoubleStore();
+    final long _windowDuration;
+    final long _every;
+    long _startTime;
+
+    /**
+     * Instantiates a new LongDoubleSlidingWindowCollection
+     * @param windowDuration the duration of a time window
+     * @param every the time between the starting point of each time window
+     * @param startTime the first time an event can be in a time window -- events before the start time are discarded.
+     */
+    public LongDoubleSlidingWindowCollection(long windowDuration, long every, long startTime) {
+        _windowDuration = windowDuration;
+        _every          = every;
+        _startTime      = startTime;
+    }
+
+    /**
+     * Adds an event in chronological order.
+     * @param timestamp the timestamp of the event
+     * @param value the value of the event
+     */
+    public void add(long timestamp, double value) {
+        // an event before the start time would be evicted immediately
+        if(timestamp >= _startTime)
+            _store.add(timestamp, value);
+    }
+
+    /**
+     * Advances the start time of this collection and evicts the events before it. The new start time is aligned down
+     * to the window grid, so the windows that remain keep their boundaries; a time before the current start time is
+     * ignored.
+     * @param startTime the new start time
+     */
+    public void advanceStartTime(long startTime) {
+        if(startTime <= _startTime)
+            return;
+        _startTime += Math.floorDiv(startTime - _startTime, _every) * _every;
+        _store.removeFirst(_store.lowerBound(0, _startTime));
+    }
+
+    /**
+     * Returns the number of events in this collection.
+     * @return the number of events in this collection
+     */
+    public int size() {
+        return _store.size();
+    }
+
+    /**
+     * Returns the number of windows from the start time to the most recent event.
+     */
+    long windowCount() {
+        if(_store.size() == 0)
+            return 0;
+        long end = _store.getTimestamp(_store.size() - 1) + 1;
+        return Math.floorDiv(end - _startTime - 1, _every) + 1;
+    }
+
+    /**
+     * Returns the end time (exclusive) of the last window: one past the most recent event.
+     */
+    private long endTime() {
+        return _store.size() == 0 ? _startTime : _store.getTimestamp(_store.size() - 1) + 1;
+    }
+
+    /**
+     * Returns the window at the parameter position, searching for its events from the parameter index.
+     * @param position the position of the window from the start time
+     * @param end the end time of the last window, to which window ends are clamped
+     * @param index an index at or before the first event of the window
+     */
+    private LongDoubleTimeWindow window(long position, long end, int index) {
+        long start = _startTime + position * _every;
+        long windowEnd = Math.min(start + _windowDuration, end);
+        int from = _store.lowerBound(index, start);
+        int to = _store.lowerBound(from, windowEnd);
+        return new LongDoubleTimeWindow(_store, start, windowEnd, from, to);
+    }
+
+    @Override
+    public Iterator<LongDoubleTimeWindow> iterator() {
+        final long count = windowCount();
+        final long end = endTime();
+        return new Iterator<LongDoubleTimeWindow>() {
+            long _position = 0;
+            int _index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return _position < count;
+            }
+
+            @Override
+            public LongDoubleTimeWindow next() {
+                if(!hasNext())
+                    throw new NoSuchElementException();
+                // windows start in increasing order, so neither boundary can be before the previous window's start
+                LongDoubleTimeWindow window = window(_position++, end, _index);
+                _index = window._from;
+                return window;
+            }
+        };
+    }
+
+    @Override
+    public void forEach(Consumer<? super LongDoubleTimeWindow> action) {
+        for(Iterator<LongDoubleTimeWindow> it = iterator(); it.hasNext(); ) {
+            action.accept(it.next());
+        }
+    }
+
+    @Override
+    public Spliterator<LongDoubleTimeWindow> spliterator() {
+        return new WindowSpliterator(0, windowCount(), endTime(), 0);
+    }
+
+    /**
+     * A spliterator over a range of window positions. Windows are found by position, so a range splits in half
+     * without visiting its windows, and the columns are only read, so the halves can be traversed in parallel.
+     */
+    class WindowSpliterator implements Spliterator<LongDoubleTimeWindow> {
+        long _position;
+        final long _fence;
+        final long _end;
+        // an index at or before the first event of the next window
+        int _index;
+
+        WindowSpliterator(long position, long fence, long end, int index) {
+            _position   = position;
+            _fence      = fence;
+            _end        = end;
+            _index      = index;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super LongDoubleTimeWindow> action) {
+            if(_position >= _fence)
+                return false;
+            LongDoubleTimeWindow window = window(_position++, _end, _index);
+            _index = window._from;
+            action.accept(window);
+            return true;
+        }
+
+        @Override
+        public Spliterator<LongDoubleTimeWindow> trySplit() {
+            long mid = (_position + _fence) >>> 1;
+            if(mid <= _position)
+                return null;
+            // both halves search from the current index; the suffix gallops forward to its first window
+            Spliterator<LongDoubleTimeWindow> prefix = new WindowSpliterator(_position, mid, _end, _index);
+            _position = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return _fence - _position;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.util.Arrays;
+
+/**
+ * A time-ordered store of (timestamp, double) pairs held in parallel primitive columns, 16 bytes per event. Evicted
+ * events at the head of the columns are reclaimed when the columns next need to grow.
+ */
+class LongDoubleStore {
+    // the events are stored at _timestamps[_head + index] and _values[_head + index]
+    long[] _timestamps;
+    double[] _values;
+    int _head;
+    int _size;
+
+    LongDoubleStore() {
+        _timestamps = new long[16];
+        _values     = new double[16];
+    }
+
+    int size() {
+        return _size;
+    }
+
+    long getTimestamp(int index) {
+        return _timestamps[_head + index];
+    }
+
+    double getValue(int index) {
+        return _values[_head + index];
+    }
+
+    /**
+     * Adds an event in chronological order, after any events with the same timestamp.
+     * @return the index the event was inserted at
+     */
+    int add(long timestamp, double value) {
+        if(_head + _size == _timestamps.length)
+            ensureCapacity(_size + 1);
+
+        // walk back over any newer events; in-order events are appended without a comparison loop
+        int index = _size;
+        while(index > 0 && timestamp < _timestamps[_head + index - 1])
+            index--;
+
+        if(index < _size) {
+            System.arraycopy(_timestamps, _head + index, _timestamps, _head + index + 1, _size - index);
+            System.arraycopy(_values, _head + index, _values, _head + index + 1, _size - index);
+        }
+        _timestamps[_head + index] = timestamp;
+        _values[_head + index] = value;
+        _size++;
+        return index;
+    }
+
+    void removeFirst(int count) {
+        if(count <= 0)
+            return;
+        _head += count;
+        _size -= count;
+        if(_size == 0)
+            _head = 0;
+    }
+
+    int lowerBound(int fromIndex, long time) {
+        return Utils.lowerBound(_timestamps, _head + fromIndex, _head + _size, time) - _head;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if(capacity <= _timestamps.length / 2) {
+            // plenty of room once evicted slots at the head are reclaimed
+            System.arraycopy(_timestamps, _head, _timestamps, 0, _size);
+            System.arraycopy(_values, _head, _values, 0, _size);
+        } else {
+            int length = Math.max(capacity, _timestamps.length + (_timestamps.length >> 1));
+            _timestamps = Arrays.copyOfRange(_timestamps, _head, _head + length);
+            _values     = Arrays.copyOfRange(_values, _head, _head + length);
+        }
+        _head = 0;
+    }
+}
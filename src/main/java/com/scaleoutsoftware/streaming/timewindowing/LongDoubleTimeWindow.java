@@ -0,0 +1,171 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.util.Arrays;
+import java.util.stream.DoubleStream;
+
+/**
+ * A window of (timestamp, double) events. The window is a view over a range of the primitive columns of its
+ * collection; events are not copied or boxed, and the aggregate methods run tight loops over the value column.
+ */
+public class LongDoubleTimeWindow {
+    final LongDoubleStore _store;
+    final long _startTime;
+    final long _endTime;
+    final int _from;
+    final int _to;
+
+    LongDoubleTimeWindow(LongDoubleStore store, long startTime, long endTime, int from, int to) {
+        _store      = store;
+        _startTime  = startTime;
+        _endTime    = endTime;
+        _from       = from;
+        _to         = to;
+    }
+
+    /**
+     * Returns the start time of this window.
+     * @return the start time of the window.
+     */
+    public long getStartTime() {
+        return _startTime;
+    }
+
+    /**
+     * Returns the end time of this window.
+     * @return the end time of this window.
+     */
+    public long getEndTime() {
+        return _endTime;
+    }
+
+    /**
+     * Returns the number of events in this window.
+     * @return the number of events in this window.
+     */
+    public int size() {
+        return _to - _from;
+    }
+
+    /**
+     * Returns the timestamp of an event in this window.
+     * @param index the index of the event in this window
+     * @return the timestamp of the event
+     */
+    public long getTimestamp(int index) {
+        return _store._timestamps[_store._head + checkIndex(index)];
+    }
+
+    /**
+     * Returns the value of an event in this window.
+     * @param index the index of the event in this window
+     * @return the value of the event
+     */
+    public double getValue(int index) {
+        return _store._values[_store._head + checkIndex(index)];
+    }
+
+    /**
+     * Performs an action on each event in this window in chronological order.
+     * @param action the action to perform on each event
+     */
+    public void forEach(LongDoubleConsumer action) {
+        long[] timestamps = _store._timestamps;
+        double[] values = _store._values;
+        for(int i = _store._head + _from, end = _store._head + _to; i < end; i++) {
+            action.accept(timestamps[i], values[i]);
+        }
+    }
+
+    /**
+     * Returns the values of this window as a sequential DoubleStream.
+     * @return a stream of the values in this window
+     */
+    public DoubleStream values() {
+        return Arrays.stream(_store._values, _store._head + _from, _store._head + _to);
+    }
+
+    /**
+     * Copies the values of this window into a new array.
+     * @return the values of this window
+     */
+    public double[] toArray() {
+        return Arrays.copyOfRange(_store._values, _store._head + _from, _store._head + _to);
+    }
+
+    /**
+     * Returns the sum of the values in this window. The values are summed in four independent lanes so that the
+     * additions are not serialized on a single accumulator; the result may differ from a sequential sum in the last
+     * bits.
+     * @return the sum of the values, or 0 if the window is empty
+     */
+    public double sum() {
+        double[] values = _store._values;
+        int i = _store._head + _from, end = _store._head + _to;
+        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        for(; i + 3 < end; i += 4) {
+            s0 += values[i];
+            s1 += values[i + 1];
+            s2 += values[i + 2];
+            s3 += values[i + 3];
+        }
+        for(; i < end; i++) {
+            s0 += values[i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Returns the average of the values in this window.
+     * @return the average of the values, or NaN if the window is empty
+     */
+    public double average() {
+        return size() == 0 ? Double.NaN : sum() / size();
+    }
+
+    /**
+     * Returns the minimum value in this window.
+     * @return the minimum value, or positive infinity if the window is empty
+     */
+    public double min() {
+        double[] values = _store._values;
+        double min = Double.POSITIVE_INFINITY;
+        for(int i = _store._head + _from, end = _store._head + _to; i < end; i++) {
+            min = Math.min(min, values[i]);
+        }
+        return min;
+    }
+
+    /**
+     * Returns the maximum value in this window.
+     * @return the maximum value, or negative infinity if the window is empty
+     */
+    public double max() {
+        double[] values = _store._values;
+        double max = Double.NEGATIVE_INFINITY;
+        for(int i = _store._head + _from, end = _store._head + _to; i < end; i++) {
+            max = Math.max(max, values[i]);
+        }
+        return max;
+    }
+
+    private int checkIndex(int index) {
+        if(index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        return _from + index;
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+/**
+ * The LongDoubleTumblingWindowCollection holds a time series of (timestamp, double) events as an iterable collection
+ * of tumbling windows. Events are stored in parallel long and double columns instead of as objects.
+ */
+public class LongDoubleTumblingWindowCollection extends LongDoubleSlidingWindowCollection {
+
+    /**
+     * Instantiates a new LongDoubleTumblingWindowCollection
+     * @param windowDuration the duration of a time window
+     * @param startTime the first time an event can be in a time window -- events before the start time are discarded.
+     */
+    public LongDoubleTumblingWindowCollection(long windowDuration, long startTime) {
+        super(windowDuration, windowDuration, startTime);
+    }
+}
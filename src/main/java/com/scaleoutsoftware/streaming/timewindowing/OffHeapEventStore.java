@@ -0,0 +1,174 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+/**
+ * An EventStore that keeps items outside of the Java heap, so that a long retention horizon does not grow the heap or
+ * the work of the garbage collector. Items are converted to fixed-size records with a RecordCodec and stored with
+ * their timestamps in segments of direct or memory-mapped buffers. Appending an item and evicting items from the head
+ * cost O(1); a segment whose items have all been evicted is recycled for new items, so the store holds the segments
+ * of its peak size.
+ *
+ * Reading an item decodes a new instance from its record, so window iteration allocates one object per item visited.
+ * Items that arrive out of order are inserted by shifting the records after them.
+ * @param <T> the type of the items in the store
+ */
+public class OffHeapEventStore<T> implements EventStore<T> {
+    static final int DEFAULT_SEGMENT_RECORDS = 1 << 16;
+
+    final RecordCodec<T> _codec;
+    // every slot holds an 8-byte timestamp followed by the record, padded to a multiple of 8 bytes
+    final int _slotSize;
+    final int _segmentShift;
+    final int _segmentMask;
+    final ArrayList<ByteBuffer> _segments = new ArrayList<>();
+    final FileChannel _channel;
+    long _mappedBytes;
+    // segments whose items have all been evicted, reused before new segments are allocated or mapped
+    final ArrayList<ByteBuffer> _spares = new ArrayList<>();
+    // the slot of the first item, counted from the start of the first segment
+    int _head;
+    int _size;
+
+    /**
+     * Instantiates a new, empty OffHeapEventStore backed by direct buffers.
+     * @param codec the codec used to convert items to records
+     */
+    public OffHeapEventStore(RecordCodec<T> codec) {
+        this(codec, DEFAULT_SEGMENT_RECORDS, null);
+    }
+
+    /**
+     * Instantiates a new, empty OffHeapEventStore backed by direct buffers.
+     * @param codec the codec used to convert items to records
+     * @param segmentRecords the number of records in each segment, rounded up to a power of two
+     */
+    public OffHeapEventStore(RecordCodec<T> codec, int segmentRecords) {
+        this(codec, segmentRecords, null);
+    }
+
+    /**
+     * Instantiates a new, empty OffHeapEventStore backed by segments memory-mapped from a file. The file holds the
+     * live segments of the store and is overwritten as segments are recycled.
+     * @param codec the codec used to convert items to records
+     * @param segmentRecords the number of records in each segment, rounded up to a power of two
+     * @param channel a channel to a file opened for reading and writing, or null to use direct buffers
+     */
+    public OffHeapEventStore(RecordCodec<T> codec, int segmentRecords, FileChannel channel) {
+        int records = Integer.highestOneBit(Math.max(16, segmentRecords - 1) << 1);
+        _codec          = codec;
+        _slotSize       = 8 + ((codec.recordSize() + 7) & ~7);
+        if((long)records * _slotSize > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Segments cannot be larger than 2GB.");
+        _segmentShift   = Integer.numberOfTrailingZeros(records);
+        _segmentMask    = records - 1;
+        _channel        = channel;
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    @Override
+    public T get(int index) {
+        checkIndex(index);
+        int slot = _head + index;
+        return _codec.read(_segments.get(slot >>> _segmentShift), offset(slot) + 8);
+    }
+
+    @Override
+    public long getTimestamp(int index) {
+        checkIndex(index);
+        int slot = _head + index;
+        return _segments.get(slot >>> _segmentShift).getLong(offset(slot));
+    }
+
+    @Override
+    public int add(T item, long timestamp) {
+        int tail = _head + _size;
+        if((tail >>> _segmentShift) == _segments.size())
+            _segments.add(allocateSegment());
+
+        // walk back over any newer items; in-order items are appended without a comparison loop
+        int index = _size;
+        while(index > 0 && timestamp < getTimestamp(index - 1))
+            index--;
+        for(int slot = tail; slot > _head + index; slot--)
+            copySlot(slot - 1, slot);
+
+        int slot = _head + index;
+        ByteBuffer segment = _segments.get(slot >>> _segmentShift);
+        segment.putLong(offset(slot), timestamp);
+        _codec.write(item, segment, offset(slot) + 8);
+        _size++;
+        return index;
+    }
+
+    @Override
+    public void removeFirst(int count) {
+        if(count <= 0)
+            return;
+        if(count > _size)
+            throw new IndexOutOfBoundsException("Count: " + count + ", Size: " + _size);
+        _head += count;
+        _size -= count;
+        // recycle the segments that no longer hold an item
+        int released = _size == 0 ? _segments.size() : _head >>> _segmentShift;
+        _spares.addAll(_segments.subList(0, released));
+        _segments.subList(0, released).clear();
+        _head = _size == 0 ? 0 : _head & _segmentMask;
+    }
+
+    private ByteBuffer allocateSegment() {
+        if(!_spares.isEmpty())
+            return _spares.remove(_spares.size() - 1);
+        int bytes = (_segmentMask + 1) * _slotSize;
+        if(_channel == null)
+            return ByteBuffer.allocateDirect(bytes);
+        try {
+            ByteBuffer segment = _channel.map(FileChannel.MapMode.READ_WRITE, _mappedBytes, bytes);
+            _mappedBytes += bytes;
+            return segment;
+        } catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int offset(int slot) {
+        return (slot & _segmentMask) * _slotSize;
+    }
+
+    private void copySlot(int from, int to) {
+        ByteBuffer source = _segments.get(from >>> _segmentShift);
+        ByteBuffer target = _segments.get(to >>> _segmentShift);
+        int sourceOffset = offset(from), targetOffset = offset(to);
+        for(int i = 0; i < _slotSize; i += 8) {
+            target.putLong(targetOffset + i, source.getLong(sourceOffset + i));
+        }
+    }
+
+    private void checkIndex(int index) {
+        if(index < 0 || index >= _size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _size);
+    }
+}
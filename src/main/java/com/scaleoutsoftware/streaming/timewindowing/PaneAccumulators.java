@@ -0,0 +1,190 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * Maintains the results of an aggregator over the sliding (or tumbling) windows of a window collection. The timeline
+ * is cut into non-overlapping panes whose length is the greatest common divisor of the window duration and the time
+ * between windows, so every window is an exact run of panes. Each added item is folded into the accumulator of the
+ * single pane that contains it, however much the windows overlap, and a window's result is combined from the
+ * partial results of its panes when it is read. Only panes that hold items have an accumulator, kept in a sorted map,
+ * so memory follows the number of occupied panes rather than the time spanned by sparse or bursty feeds.
+ */
+class PaneAccumulators<T, A, R> implements StoreListener<T>, Iterable<WindowAggregate<R>> {
+    final AbstractWindowCollection<T> _collection;
+    final WindowAggregator<? super T, A, R> _aggregator;
+    final long _duration;
+    final long _every;
+    final long _paneLength;
+    // the offset of the pane boundaries from multiples of the pane length, taken from the start time so that panes
+    // line up with the windows; re-anchored when a checkpoint restores a different start time
+    long _anchor;
+    // accumulators of the occupied panes by pane index
+    final TreeMap<Long, A> _panes = new TreeMap<>();
+    // the pane most recently added to, which in-order items usually fall in again
+    long _lastPane;
+    A _lastAccumulator;
+
+    PaneAccumulators(AbstractWindowCollection<T> collection, WindowAggregator<? super T, A, R> aggregator, long duration, long every) {
+        _collection = collection;
+        _aggregator = aggregator;
+        _duration   = duration;
+        _every      = every;
+        _paneLength = gcd(duration, every);
+        _anchor     = Math.floorMod(collection._startTime, _paneLength);
+
+        EventStore<T> store = collection._store;
+        for(int i = 0; i < store.size(); i++) {
+            onAdd(store.get(i), store.getTimestamp(i));
+        }
+    }
+
+    static long gcd(long a, long b) {
+        while(b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * Returns the index of the pane containing the parameter time. Panes are numbered from time 0 rather than from the
+     * start time, so no offset is taken that could overflow when the start time is far in the past.
+     */
+    long pane(long time) {
+        // a time before the anchor within its multiple of the pane length belongs to the previous pane; a nonzero
+        // anchor implies a pane length of at least 2, so the decrement cannot wrap
+        return Math.floorDiv(time, _paneLength) - (Math.floorMod(time, _paneLength) < _anchor ? 1 : 0);
+    }
+
+    @Override
+    public void onAdd(T item, long timestamp) {
+        long pane = pane(timestamp);
+        A accumulator;
+        if(_lastAccumulator != null && pane == _lastPane) {
+            accumulator = _lastAccumulator;
+        } else {
+            accumulator = _panes.get(pane);
+            if(accumulator == null)
+                accumulator = _aggregator.createAccumulator();
+        }
+        A updated = _aggregator.accumulate(accumulator, item);
+        // mutable accumulators are updated in place and already in the map
+        if(updated != accumulator || pane != _lastPane || _lastAccumulator == null)
+            _panes.put(pane, updated);
+        _lastPane = pane;
+        _lastAccumulator = updated;
+    }
+
+    @Override
+    public void onRestore(long startTime) {
+        // the store is empty, so only the grid the panes are cut on has to follow the restored windows
+        _anchor = Math.floorMod(startTime, _paneLength);
+        _panes.clear();
+        _lastAccumulator = null;
+    }
+
+    @Override
+    public void onEvict(long startTime) {
+        // panes that end before the start time of the collection can no longer be part of a window
+        _panes.headMap(pane(startTime), false).clear();
+        if(_lastAccumulator != null && !_panes.containsKey(_lastPane))
+            _lastAccumulator = null;
+    }
+
+    /**
+     * Combines the partial results of the panes between the parameter times.
+     * @param start the start time (inclusive) of the first pane
+     * @param end the end time (exclusive) of the last pane
+     * @return a new accumulator covering the panes
+     */
+    A combine(long start, long end) {
+        A result = _aggregator.createAccumulator();
+        for(A accumulator : _panes.subMap(pane(start), true, pane(end - 1), true).values()) {
+            result = _aggregator.combine(result, accumulator);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the result of the aggregator over a window of the grid.
+     * @param start the start time of the window
+     * @param end the end time (exclusive) of the window
+     * @return the result of the aggregator over the items of the window
+     */
+    R result(long start, long end) {
+        return _aggregator.getResult(combine(start, end));
+    }
+
+    @Override
+    public Iterator<WindowAggregate<R>> iterator() {
+        _collection.drainPending();
+        // windows follow the same start/end clamping as Windowing.toSlidingWindows over the collection
+        final long end = _collection._store.size() == 0 ? _collection._startTime : _collection.endTime();
+        return new Iterator<WindowAggregate<R>>() {
+            long _start = _collection._startTime;
+
+            @Override
+            public boolean hasNext() {
+                return _start < end;
+            }
+
+            @Override
+            public WindowAggregate<R> next() {
+                if(!hasNext())
+                    throw new NoSuchElementException();
+                long start = _start;
+                long windowEnd = Math.min(start + _duration, end);
+                _start += _every;
+                return new AggregateWindow<>(start, windowEnd, _aggregator.getResult(combine(start, start + _duration)));
+            }
+        };
+    }
+    /**
+     * The result of an aggregator over a single time window.
+     */
+    static class AggregateWindow<R> implements WindowAggregate<R> {
+        final long _startTime;
+        final long _endTime;
+        final R _result;
+
+        AggregateWindow(long startTime, long endTime, R result) {
+            _startTime  = startTime;
+            _endTime    = endTime;
+            _result     = result;
+        }
+
+        @Override
+        public long getStartTime() {
+            return _startTime;
+        }
+
+        @Override
+        public long getEndTime() {
+            return _endTime;
+        }
+
+        @Override
+        public R getResult() {
+            return _result;
+        }
+    }
+}
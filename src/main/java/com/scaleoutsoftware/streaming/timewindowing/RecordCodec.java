@@ -0,0 +1,49 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts items to and from fixed-size binary records, allowing items to be held outside of the Java heap. A codec
+ * reads and writes a record with the absolute get and put methods of a ByteBuffer, starting at the parameter offset;
+ * it must not change the position or limit of the buffer.
+ * @param <T> the type of the items
+ */
+public interface RecordCodec<T> {
+
+    /**
+     * Returns the number of bytes in every record.
+     * @return the size of a record, in bytes
+     */
+    int recordSize();
+
+    /**
+     * Writes an item as a record.
+     * @param item the item to write
+     * @param buffer the buffer to write the record to
+     * @param offset the offset of the record in the buffer
+     */
+    void write(T item, ByteBuffer buffer, int offset);
+
+    /**
+     * Reads an item from a record.
+     * @param buffer the buffer to read the record from
+     * @param offset the offset of the record in the buffer
+     * @return the item
+     */
+    T read(ByteBuffer buffer, int offset);
+}
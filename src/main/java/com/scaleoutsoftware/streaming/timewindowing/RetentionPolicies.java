@@ -0,0 +1,81 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+/**
+ * Static factories for common RetentionPolicies.
+ */
+public class RetentionPolicies {
+
+    /**
+     * Retains the items within a range of time before the watermark of the collection, which follows the most recent
+     * item.
+     * @param maxAge the length of time to retain, in the units of the timestamps
+     * @return a policy that evicts items older than the maximum age
+     */
+    public static RetentionPolicy maxAge(long maxAge) {
+        if(maxAge < 0)
+            throw new IllegalArgumentException("Maximum age cannot be negative.");
+        // saturates at Long.MIN_VALUE rather than wrapping for a watermark within maxAge of it
+        return (store, watermark) -> watermark < Long.MIN_VALUE + maxAge ? Long.MIN_VALUE : watermark - maxAge;
+    }
+
+    /**
+     * Retains at most the parameter number of the most recent items.
+     * @param maxCount the number of items to retain
+     * @return a policy that evicts the oldest items beyond the maximum count
+     */
+    public static RetentionPolicy maxCount(int maxCount) {
+        if(maxCount <= 0)
+            throw new IllegalArgumentException("Maximum count must be positive.");
+        return (store, watermark) -> {
+            int size = store.size();
+            // the oldest retained item is the maxCount-th newest; items that share its timestamp are dropped with the
+            // older ones so that the bound holds before the collection aligns the start time to its windows
+            return size <= maxCount ? Long.MIN_VALUE : store.getTimestamp(size - maxCount - 1) + 1;
+        };
+    }
+
+    /**
+     * Retains the most recent items that fit in an approximate memory budget, given an estimate of the memory held by
+     * each item. The estimate should cover the item itself and the store's per-item overhead, such as the 8-byte
+     * timestamp and the reference kept by the on-heap stores, or the record size of an OffHeapEventStore.
+     * @param maxBytes the memory budget, in bytes
+     * @param bytesPerItem the estimated memory held by each item, in bytes
+     * @return a policy that evicts the oldest items beyond the budget
+     */
+    public static RetentionPolicy maxBytes(long maxBytes, int bytesPerItem) {
+        if(bytesPerItem <= 0)
+            throw new IllegalArgumentException("Bytes per item must be positive.");
+        return maxCount((int)Math.min(Integer.MAX_VALUE, Math.max(1, maxBytes / bytesPerItem)));
+    }
+
+    /**
+     * Combines policies so that each of them is satisfied: an item is retained only if every policy retains it.
+     * @param policies the policies to combine
+     * @return a policy that retains the items retained by every parameter policy
+     */
+    public static RetentionPolicy all(RetentionPolicy... policies) {
+        RetentionPolicy[] copy = policies.clone();
+        return (store, watermark) -> {
+            long retainFrom = Long.MIN_VALUE;
+            for(RetentionPolicy policy : copy) {
+                retainFrom = Math.max(retainFrom, policy.retainFrom(store, watermark));
+            }
+            return retainFrom;
+        };
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+/**
+ * Decides how much of the history of a window collection is retained. A policy is consulted periodically as items are
+ * added; the collection then advances its start time, aligned to its window grid, and evicts the items before it.
+ * Common policies are provided by RetentionPolicies.
+ */
+public interface RetentionPolicy {
+
+    /**
+     * Returns the earliest time the collection should retain, given the store behind the collection and its
+     * watermark.
+     * @param store the time-ordered store behind the collection
+     * @param watermark the watermark of the collection: its most recent timestamp, or a later time it was advanced to
+     * @return the time before which items can be evicted, or Long.MIN_VALUE to retain every item
+     */
+    long retainFrom(EventStore<?> store, long watermark);
+}
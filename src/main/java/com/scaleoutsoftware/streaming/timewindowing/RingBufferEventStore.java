@@ -0,0 +1,181 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.util.List;
+
+/**
+ * An EventStore backed by a growable circular buffer. Appending an item and evicting items from the head cost O(1)
+ * amortized, and items and timestamps are read by index in O(1), which makes it a good fit for window collections
+ * that retain a sliding range of time. Items that arrive out of order are inserted by shifting the shorter side of the
+ * buffer.
+ * @param <T> the type of the items in the store
+ */
+public class RingBufferEventStore<T> implements EventStore<T> {
+    // the largest power of two that is a valid array length
+    static final int MAX_CAPACITY = 1 << 30;
+
+    Object[] _items;
+    long[] _timestamps;
+    int _mask;
+    int _head;
+    int _size;
+
+    /**
+     * Instantiates a new, empty RingBufferEventStore.
+     */
+    public RingBufferEventStore() {
+        this(16);
+    }
+
+    /**
+     * Instantiates a new, empty RingBufferEventStore.
+     * @param initialCapacity the number of items the store can hold before it grows, rounded up to a power of two and
+     *                        limited to 2^30
+     */
+    public RingBufferEventStore(int initialCapacity) {
+        if(initialCapacity < 0)
+            throw new IllegalArgumentException("Initial capacity cannot be negative.");
+        int capacity = initialCapacity > MAX_CAPACITY / 2
+                ? MAX_CAPACITY
+                : Integer.highestOneBit(Math.max(16, initialCapacity - 1) << 1);
+        _items      = new Object[capacity];
+        _timestamps = new long[capacity];
+        _mask       = capacity - 1;
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if(index < 0 || index >= _size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _size);
+        return (T)_items[(_head + index) & _mask];
+    }
+
+    @Override
+    public long getTimestamp(int index) {
+        if(index < 0 || index >= _size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _size);
+        return _timestamps[(_head + index) & _mask];
+    }
+
+    @Override
+    public int add(T item, long timestamp) {
+        if(_size == _items.length)
+            grow();
+
+        // walk back over any newer items; in-order items are appended without a comparison loop
+        int index = _size;
+        while(index > 0 && timestamp < _timestamps[(_head + index - 1) & _mask])
+            index--;
+
+        if(index < _size / 2) {
+            // closer to the head: move the items before the index one slot towards the head
+            _head = (_head - 1) & _mask;
+            for(int i = 0; i < index; i++) {
+                int to = (_head + i) & _mask, from = (to + 1) & _mask;
+                _items[to] = _items[from];
+                _timestamps[to] = _timestamps[from];
+            }
+        } else {
+            for(int i = _size; i > index; i--) {
+                int to = (_head + i) & _mask, from = (to - 1) & _mask;
+                _items[to] = _items[from];
+                _timestamps[to] = _timestamps[from];
+            }
+        }
+
+        int slot = (_head + index) & _mask;
+        _items[slot] = item;
+        _timestamps[slot] = timestamp;
+        _size++;
+        return index;
+    }
+
+    @Override
+    public void addAll(List<? extends T> items, long[] timestamps) {
+        int count = items.size();
+        while(_size + count > _items.length)
+            grow();
+
+        // merge from the back: existing items newer than a batch item move up to make room for it
+        int i = _size - 1;
+        for(int j = count - 1; j >= 0; j--) {
+            long timestamp = timestamps[j];
+            while(i >= 0 && _timestamps[(_head + i) & _mask] > timestamp) {
+                int from = (_head + i) & _mask, to = (_head + i + j + 1) & _mask;
+                _items[to] = _items[from];
+                _timestamps[to] = _timestamps[from];
+                i--;
+            }
+            int slot = (_head + i + j + 1) & _mask;
+            _items[slot] = items.get(j);
+            _timestamps[slot] = timestamp;
+        }
+        _size += count;
+    }
+
+    @Override
+    public void removeFirst(int count) {
+        if(count <= 0)
+            return;
+        if(count > _size)
+            throw new IndexOutOfBoundsException("Count: " + count + ", Size: " + _size);
+        // release the evicted items to the garbage collector
+        for(int i = 0; i < count; i++) {
+            _items[(_head + i) & _mask] = null;
+        }
+        _head = (_head + count) & _mask;
+        _size -= count;
+    }
+
+    @Override
+    public int lowerBound(int fromIndex, long time) {
+        // the items occupy at most two contiguous runs of the buffer: search the run holding fromIndex, then the next
+        int start = _head + fromIndex;
+        int end = _head + _size;
+        if(start < _timestamps.length) {
+            int firstEnd = Math.min(end, _timestamps.length);
+            int index = Utils.lowerBound(_timestamps, start, firstEnd, time);
+            if(index < firstEnd || end <= _timestamps.length)
+                return index - _head;
+            start = _timestamps.length;
+        }
+        return Utils.lowerBound(_timestamps, start - _timestamps.length, end - _timestamps.length, time) + _timestamps.length - _head;
+    }
+
+    private void grow() {
+        if(_items.length == MAX_CAPACITY)
+            throw new IllegalStateException("The store cannot hold more than " + MAX_CAPACITY + " items.");
+        int capacity = _items.length << 1;
+        Object[] items = new Object[capacity];
+        long[] timestamps = new long[capacity];
+        int firstRun = Math.min(_size, _items.length - _head);
+        System.arraycopy(_items, _head, items, 0, firstRun);
+        System.arraycopy(_items, 0, items, firstRun, _size - firstRun);
+        System.arraycopy(_timestamps, _head, timestamps, 0, firstRun);
+        System.arraycopy(_timestamps, 0, timestamps, firstRun, _size - firstRun);
+        _items      = items;
+        _timestamps = timestamps;
+        _mask       = capacity - 1;
+        _head       = 0;
+    }
+}
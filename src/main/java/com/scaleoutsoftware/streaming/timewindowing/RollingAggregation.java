@@ -0,0 +1,234 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.util.Arrays;
+
+/**
+ * Maintains the result of an aggregator over the items in a window of fixed length that ends at the most recent item
+ * of a window collection. The items are kept in a two-stack queue: new items are pushed onto a back stack that keeps
+ * a running accumulator, and items leave from a front stack that keeps the accumulator of every suffix. When the front
+ * stack runs out, the back stack is flipped onto it. Every item is accumulated a constant number of times, so
+ * non-invertible aggregates such as min and max cost O(1) amortized per item, and reading the result costs O(1).
+ *
+ * Items that arrive out of order are supported. A late item that falls in the back stack is accumulated into its
+ * running accumulator; only an item older than the newest item of the front stack causes suffix accumulators to be
+ * recomputed, and then only those from its position back to the oldest item.
+ */
+class RollingAggregation<T, A, R> implements StoreListener<T>, WindowAggregate<R> {
+    final AbstractWindowCollection<T> _collection;
+    final WindowAggregator<? super T, A, R> _aggregator;
+    final long _range;
+    long _newest = Long.MIN_VALUE;
+
+    // front stack, oldest item first; _frontAggs[i] covers the items from i up to _frontEnd
+    Object[] _frontItems = new Object[16];
+    long[] _frontTimes = new long[16];
+    Object[] _frontAggs = new Object[16];
+    int _frontHead;
+    int _frontEnd;
+
+    // back stack, oldest item first; _backAgg covers all of its items
+    Object[] _backItems = new Object[16];
+    long[] _backTimes = new long[16];
+    int _backSize;
+    A _backAgg;
+
+    RollingAggregation(AbstractWindowCollection<T> collection, WindowAggregator<? super T, A, R> aggregator, long range) {
+        _collection = collection;
+        _aggregator = aggregator;
+        _range      = range;
+
+        EventStore<T> store = collection._store;
+        for(int i = 0; i < store.size(); i++) {
+            onAdd(store.get(i), store.getTimestamp(i));
+        }
+    }
+
+    @Override
+    public void onAdd(T item, long timestamp) {
+        if(timestamp > _newest)
+            _newest = timestamp;
+        if(timestamp < startTime())
+            return;
+
+        long last = _backSize > 0 ? _backTimes[_backSize - 1]
+                : _frontEnd > _frontHead ? _frontTimes[_frontEnd - 1] : Long.MIN_VALUE;
+        if(timestamp >= last)
+            push(item, timestamp);
+        else
+            insert(item, timestamp);
+
+        evictBefore(startTime());
+    }
+
+    @Override
+    public void onEvict(long startTime) {
+        evictBefore(startTime);
+    }
+
+    private void push(T item, long timestamp) {
+        if(_backSize == _backItems.length) {
+            _backItems = Arrays.copyOf(_backItems, _backSize * 2);
+            _backTimes = Arrays.copyOf(_backTimes, _backSize * 2);
+        }
+        _backItems[_backSize] = item;
+        _backTimes[_backSize] = timestamp;
+        _backSize++;
+        _backAgg = _aggregator.accumulate(_backAgg == null ? _aggregator.createAccumulator() : _backAgg, item);
+    }
+
+    /**
+     * Inserts an out-of-order item into the stack its timestamp falls in. An item no older than the newest item of the
+     * front stack is inserted into the back stack, which only needs its running accumulator updated; an older item is
+     * inserted into the front stack, where only the suffix accumulators from its position back to the head change.
+     */
+    private void insert(T item, long timestamp) {
+        if(_frontHead == _frontEnd || timestamp >= _frontTimes[_frontEnd - 1])
+            insertBack(item, timestamp);
+        else
+            insertFront(item, timestamp);
+    }
+
+    private void insertBack(T item, long timestamp) {
+        if(_backSize == _backItems.length) {
+            _backItems = Arrays.copyOf(_backItems, _backSize * 2);
+            _backTimes = Arrays.copyOf(_backTimes, _backSize * 2);
+        }
+        int position = _backSize;
+        while(position > 0 && _backTimes[position - 1] > timestamp)
+            position--;
+        System.arraycopy(_backItems, position, _backItems, position + 1, _backSize - position);
+        System.arraycopy(_backTimes, position, _backTimes, position + 1, _backSize - position);
+        _backItems[position] = item;
+        _backTimes[position] = timestamp;
+        _backSize++;
+        _backAgg = _aggregator.accumulate(_backAgg == null ? _aggregator.createAccumulator() : _backAgg, item);
+    }
+
+    private void insertFront(T item, long timestamp) {
+        if(_frontEnd == _frontItems.length) {
+            int length = Math.max(16, (_frontEnd - _frontHead) * 2);
+            Object[] items = new Object[length];
+            long[] times = new long[length];
+            Object[] aggs = new Object[length];
+            System.arraycopy(_frontItems, _frontHead, items, 0, _frontEnd - _frontHead);
+            System.arraycopy(_frontTimes, _frontHead, times, 0, _frontEnd - _frontHead);
+            System.arraycopy(_frontAggs, _frontHead, aggs, 0, _frontEnd - _frontHead);
+            _frontItems = items;
+            _frontTimes = times;
+            _frontAggs  = aggs;
+            _frontEnd  -= _frontHead;
+            _frontHead  = 0;
+        }
+        int position = _frontEnd;
+        while(position > _frontHead && _frontTimes[position - 1] > timestamp)
+            position--;
+        // the suffixes after the insertion point do not cover the new item and only move up one slot
+        System.arraycopy(_frontItems, position, _frontItems, position + 1, _frontEnd - position);
+        System.arraycopy(_frontTimes, position, _frontTimes, position + 1, _frontEnd - position);
+        System.arraycopy(_frontAggs, position, _frontAggs, position + 1, _frontEnd - position);
+        _frontItems[position] = item;
+        _frontTimes[position] = timestamp;
+        _frontEnd++;
+        computeSuffixes(position);
+    }
+
+    /**
+     * Moves the items of the back stack onto the empty front stack.
+     */
+    private void flip() {
+        Object[] items = _frontItems;
+        long[] times = _frontTimes;
+        _frontItems = _backItems;
+        _frontTimes = _backTimes;
+        _backItems  = items;
+        _backTimes  = times;
+        if(_frontAggs.length < _frontItems.length)
+            _frontAggs = new Object[_frontItems.length];
+        _frontHead  = 0;
+        _frontEnd   = _backSize;
+        computeSuffixes(_frontEnd - 1);
+        _backSize   = 0;
+        _backAgg    = null;
+    }
+
+    /**
+     * Recomputes the suffix accumulators of the front stack from the parameter position back to the head.
+     */
+    @SuppressWarnings("unchecked")
+    private void computeSuffixes(int from) {
+        A suffix = from + 1 < _frontEnd ? (A)_frontAggs[from + 1] : null;
+        for(int i = from; i >= _frontHead; i--) {
+            A accumulator = _aggregator.accumulate(_aggregator.createAccumulator(), (T)_frontItems[i]);
+            if(suffix != null)
+                accumulator = _aggregator.combine(accumulator, suffix);
+            _frontAggs[i] = accumulator;
+            suffix = accumulator;
+        }
+    }
+
+    private void evictBefore(long time) {
+        while(true) {
+            if(_frontHead == _frontEnd) {
+                if(_backSize == 0 || _backTimes[0] >= time)
+                    return;
+                flip();
+            }
+            if(_frontTimes[_frontHead] >= time)
+                return;
+            _frontItems[_frontHead] = null;
+            _frontAggs[_frontHead] = null;
+            _frontHead++;
+        }
+    }
+
+    private long startTime() {
+        return _newest == Long.MIN_VALUE ? 0 : _newest + 1 - _range;
+    }
+
+    /**
+     * Returns the start time of the rolling window: the range ending at the most recent item.
+     * @return the start time of the rolling window
+     */
+    @Override
+    public long getStartTime() {
+        _collection.drainPending();
+        return startTime();
+    }
+
+    /**
+     * Returns the end time (exclusive) of the rolling window: one past the most recent item.
+     * @return the end time of the rolling window
+     */
+    @Override
+    public long getEndTime() {
+        _collection.drainPending();
+        return _newest == Long.MIN_VALUE ? 0 : _newest + 1;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public R getResult() {
+        _collection.drainPending();
+        A result = _aggregator.createAccumulator();
+        if(_frontHead < _frontEnd)
+            result = _aggregator.combine(result, (A)_frontAggs[_frontHead]);
+        if(_backAgg != null)
+            result = _aggregator.combine(result, _backAgg);
+        return _aggregator.getResult(result);
+    }
+}
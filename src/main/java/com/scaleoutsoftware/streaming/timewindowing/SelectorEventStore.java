@@ -0,0 +1,86 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.util.List;
+import java.util.ListIterator;
+import java.util.RandomAccess;
+
+/**
+ * An EventStore view over a time-ordered List that pulls the timestamp from an item with a selector on every access.
+ * Used by the static Windowing methods, which do not own the source collection. Lists that do not support random
+ * access are read through a cached cursor so that sequential access costs O(1) per item; the cursor is not
+ * thread-safe, so the spliterators over such a store do not split.
+ */
+class SelectorEventStore<T> implements EventStore<T> {
+    final List<T> _source;
+    final TimestampSelector<T> _selector;
+    final boolean _randomAccess;
+    ListIterator<T> _cursor;
+
+    SelectorEventStore(List<T> source, TimestampSelector<T> selector) {
+        _source         = source;
+        _selector       = selector;
+        _randomAccess   = source instanceof RandomAccess;
+    }
+
+    @Override
+    public int size() {
+        return _source.size();
+    }
+
+    @Override
+    public T get(int index) {
+        if(_randomAccess)
+            return _source.get(index);
+
+        if(_cursor == null)
+            _cursor = _source.listIterator(index);
+        // walk the cursor from its last position; sequential and nearby accesses stay cheap
+        while(_cursor.nextIndex() < index)
+            _cursor.next();
+        while(_cursor.nextIndex() > index)
+            _cursor.previous();
+        return _cursor.next();
+    }
+
+    @Override
+    public long getTimestamp(int index) {
+        return _selector.select(get(index));
+    }
+
+    @Override
+    public int add(T item, long timestamp) {
+        _cursor = null;
+        if(_source.size() == 0) {
+            _source.add(item);
+            return 0;
+        }
+        return Utils.addTimeOrdered(_source, _selector, item);
+    }
+
+    @Override
+    public void removeFirst(int count) {
+        _cursor = null;
+        if(count > 0)
+            _source.subList(0, count).clear();
+    }
+
+    @Override
+    public List<T> subList(int fromIndex, int toIndex) {
+        return _source.subList(fromIndex, toIndex);
+    }
+}
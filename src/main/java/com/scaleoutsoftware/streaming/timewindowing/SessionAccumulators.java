@@ -0,0 +1,117 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Maintains the result of an aggregator for every session window of a window collection as items are added. Sessions
+ * are tracked the same way as in SessionIndex, keyed by the timestamp of their first item, and each session carries an
+ * accumulator: an added item is folded into the session it extends, and an item that closes the gap between two
+ * sessions combines their accumulators. Reading the result of a session never visits its items.
+ */
+class SessionAccumulators<T, A, R> implements StoreListener<T> {
+
+    /**
+     * The timestamp of the last item of a session and the accumulator of its items.
+     */
+    static class Session<A> {
+        long _last;
+        A _accumulator;
+
+        Session(long last, A accumulator) {
+            _last           = last;
+            _accumulator    = accumulator;
+        }
+    }
+
+    final AbstractWindowCollection<T> _collection;
+    final WindowAggregator<? super T, A, R> _aggregator;
+    final long _timeout;
+    final TreeMap<Long, Session<A>> _sessions = new TreeMap<>();
+
+    SessionAccumulators(AbstractWindowCollection<T> collection, WindowAggregator<? super T, A, R> aggregator, long timeout) {
+        _collection = collection;
+        _aggregator = aggregator;
+        _timeout    = timeout;
+
+        // accumulate the items already in the store
+        EventStore<T> store = collection._store;
+        int size = store.size();
+        for(int i = 0; i < size; i++) {
+            onAdd(store.get(i), store.getTimestamp(i));
+        }
+    }
+
+    @Override
+    public void onAdd(T item, long timestamp) {
+        Map.Entry<Long, Session<A>> before = _sessions.floorEntry(timestamp);
+        Map.Entry<Long, Session<A>> after = _sessions.higherEntry(timestamp);
+        boolean extendsBefore = before != null && timestamp - before.getValue()._last <= _timeout;
+        boolean extendsAfter = after != null && after.getKey() - timestamp <= _timeout;
+
+        if(extendsBefore && extendsAfter) {
+            // the item closes the gap between two sessions
+            Session<A> session = before.getValue();
+            _sessions.remove(after.getKey());
+            session._accumulator = _aggregator.combine(_aggregator.accumulate(session._accumulator, item), after.getValue()._accumulator);
+            session._last = after.getValue()._last;
+        } else if(extendsBefore) {
+            Session<A> session = before.getValue();
+            session._accumulator = _aggregator.accumulate(session._accumulator, item);
+            session._last = Math.max(session._last, timestamp);
+        } else if(extendsAfter) {
+            Session<A> session = _sessions.remove(after.getKey());
+            session._accumulator = _aggregator.accumulate(session._accumulator, item);
+            _sessions.put(timestamp, session);
+        } else {
+            _sessions.put(timestamp, new Session<>(timestamp, _aggregator.accumulate(_aggregator.createAccumulator(), item)));
+        }
+    }
+
+    @Override
+    public void onEvict(long startTime) {
+        // drop the sessions before the start time; a session the start time falls in is accumulated again from the
+        // items that remain, which only happens when a retention policy cuts into a session
+        Map.Entry<Long, Session<A>> first;
+        while((first = _sessions.firstEntry()) != null && first.getKey() < startTime) {
+            _sessions.pollFirstEntry();
+            Session<A> session = first.getValue();
+            if(session._last >= startTime) {
+                EventStore<T> store = _collection._store;
+                A accumulator = _aggregator.createAccumulator();
+                int end = store.lowerBound(0, session._last + 1);
+                for(int i = 0; i < end; i++) {
+                    accumulator = _aggregator.accumulate(accumulator, store.get(i));
+                }
+                session._accumulator = accumulator;
+                _sessions.put(store.getTimestamp(0), session);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the result of the aggregator over the session that starts at the parameter time.
+     * @param start the timestamp of the first item of the session
+     * @return the result of the aggregator over the items of the session
+     */
+    R result(long start) {
+        Session<A> session = _sessions.get(start);
+        return _aggregator.getResult(session == null ? _aggregator.createAccumulator() : session._accumulator);
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * An index of the session windows in a time-ordered store, kept up to date as items are added and evicted. Sessions
+ * are held in a sorted map from the timestamp of their first item to the timestamp of their last item. An added item
+ * extends at most the session before it and the session after it, merging them if it closes the gap between them, so
+ * each update costs O(log sessions) and sessions away from the item are never touched.
+ *
+ * Boundaries are kept as timestamps rather than indices, which change on every insertion. The windows know their start
+ * and end times from the index alone; the items of a session are located with a galloping search from the previous
+ * session only when the window's items or size are first needed.
+ */
+class SessionIndex<T> implements StoreListener<T>, Iterable<TimeWindow<T>> {
+    final EventStore<T> _store;
+    final long _timeout;
+    final TreeMap<Long, Long> _sessions = new TreeMap<>();
+    // the same sessions, iterated with a single flyweight window per iterator
+    final Iterable<TimeWindow<T>> _reusing = new Iterable<TimeWindow<T>>() {
+        @Override
+        public Iterator<TimeWindow<T>> iterator() {
+            return sessionIterator(true);
+        }
+
+        @Override
+        public Spliterator<TimeWindow<T>> spliterator() {
+            return sessionSpliterator(true);
+        }
+    };
+
+    SessionIndex(EventStore<T> store, long timeout) {
+        _store      = store;
+        _timeout    = timeout;
+
+        // index the items already in the store
+        int size = store.size();
+        for(int i = 0; i < size; i++) {
+            onAdd(null, store.getTimestamp(i));
+        }
+    }
+
+    @Override
+    public void onAdd(T item, long timestamp) {
+        Map.Entry<Long, Long> before = _sessions.floorEntry(timestamp);
+        Map.Entry<Long, Long> after = _sessions.higherEntry(timestamp);
+        boolean extendsBefore = before != null && timestamp - before.getValue() <= _timeout;
+        boolean extendsAfter = after != null && after.getKey() - timestamp <= _timeout;
+
+        if(extendsBefore && extendsAfter) {
+            // the item closes the gap between two sessions
+            _sessions.remove(after.getKey());
+            _sessions.put(before.getKey(), after.getValue());
+        } else if(extendsBefore) {
+            if(timestamp > before.getValue())
+                _sessions.put(before.getKey(), timestamp);
+        } else if(extendsAfter) {
+            _sessions.remove(after.getKey());
+            _sessions.put(timestamp, after.getValue());
+        } else {
+            _sessions.put(timestamp, timestamp);
+        }
+    }
+
+    @Override
+    public void onEvict(long startTime) {
+        // drop the sessions before the start time; a session the start time falls in now starts at the oldest item
+        Map.Entry<Long, Long> first;
+        while((first = _sessions.firstEntry()) != null && first.getKey() < startTime) {
+            _sessions.pollFirstEntry();
+            if(first.getValue() >= startTime) {
+                _sessions.put(_store.getTimestamp(0), first.getValue());
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of sessions.
+     * @return the number of sessions
+     */
+    int size() {
+        return _sessions.size();
+    }
+
+    /**
+     * Performs an action on the sessions that start at or after the parameter time and whose last item is at least
+     * the timeout before the parameter close time, stopping at the first session that is still open.
+     * @return the time before which every session has closed
+     */
+    long closeSessions(long closedBefore, long closeTime, Consumer<? super TimeWindow<T>> trigger) {
+        SessionTimeWindow<T> previous = null;
+        for(Map.Entry<Long, Long> session : _sessions.tailMap(closedBefore, true).entrySet()) {
+            long last = session.getValue();
+            if(last + _timeout >= closeTime)
+                break;
+            if(trigger != null) {
+                previous = window(session.getKey(), last, previous, false);
+                trigger.accept(previous);
+            }
+            closedBefore = last + _timeout + 1;
+        }
+        return closedBefore;
+    }
+
+    private SessionTimeWindow<T> window(long start, long last, SessionTimeWindow<T> previous, boolean reuse) {
+        int hint = previous == null ? 0 : previous.searchHint();
+        SessionTimeWindow<T> window = Windowing.sessionWindow(_timeout, reuse, previous);
+        window.setBounds(_store, start, last, hint);
+        return window;
+    }
+
+    /**
+     * Returns the sessions, iterated with a single flyweight window that each call to next() moves to the following
+     * session.
+     * @return the sessions
+     */
+    Iterable<TimeWindow<T>> reusingWindows() {
+        return _reusing;
+    }
+
+    @Override
+    public Iterator<TimeWindow<T>> iterator() {
+        return sessionIterator(false);
+    }
+
+    private Iterator<TimeWindow<T>> sessionIterator(boolean reuse) {
+        Iterator<Map.Entry<Long, Long>> sessions = _sessions.entrySet().iterator();
+        return new Iterator<TimeWindow<T>>() {
+            SessionTimeWindow<T> _previous;
+
+            @Override
+            public boolean hasNext() {
+                return sessions.hasNext();
+            }
+
+            @Override
+            public TimeWindow<T> next() {
+                Map.Entry<Long, Long> session = sessions.next();
+                _previous = window(session.getKey(), session.getValue(), _previous, reuse);
+                return _previous;
+            }
+        };
+    }
+
+    /**
+     * Returns a sized spliterator over the sessions. Sessions are contiguous in the store, so the index of the first
+     * item of each session is located once and the windows are split by session range.
+     */
+    @Override
+    public Spliterator<TimeWindow<T>> spliterator() {
+        return sessionSpliterator(false);
+    }
+
+    private Spliterator<TimeWindow<T>> sessionSpliterator(boolean reuse) {
+        int[] bounds = new int[_sessions.size() + 1];
+        int count = 0;
+        int index = 0;
+        for(Long start : _sessions.keySet()) {
+            index = _store.lowerBound(index, start);
+            bounds[count++] = index;
+        }
+        bounds[count] = _store.size();
+        return new Windowing.SessionWindowSpliterator<>(_store, _timeout, bounds, 0, count, reuse);
+    }
+}
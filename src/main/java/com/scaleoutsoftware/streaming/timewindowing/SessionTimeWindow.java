@@ -19,14 +19,25 @@ import java.util.*;
 import java.util.function.Consumer;
 
 /**
- * The sequence of items in a collection before a predetermined timeout between items has been reached.
+ * The sequence of items in a collection before a predetermined timeout between items has been reached. The window is
+ * a view over a range of indices in the source collection; items are not copied. When the session's start and end
+ * times are already known, the range is resolved lazily, the first time the items or the size are needed. A reusable
+ * window is a flyweight that the iterator producing it moves to each following window; it also reuses one iterator
+ * over its items.
  */
 class SessionTimeWindow<T> implements TimeWindow<T> {
     long _startTime;
     long _endTime;
     long _timeout;
-    List<T> _items;
-    int _size;
+    EventStore<T> _source;
+    // the index the boundary searches start from, until the range has been resolved
+    int _hint;
+    boolean _resolved;
+    int _from;
+    int _to;
+    // when set, the window is a flyweight that is repositioned by its iterator and reuses one item iterator
+    boolean _reusable;
+    StoreRangeIterator<T> _cursor;
 
 
     public SessionTimeWindow(long timeout) {
@@ -36,27 +47,25 @@ class SessionTimeWindow<T> implements TimeWindow<T> {
     }
 
     /**
-     * Set the items used in this SessionWindow.
-     * @param source the source list to iterate over.
-     * @param startIndex the index in the source list to start at
-     * @param selector the selector used to pull a timestamp out of an object
+     * Set the range of items used in this SessionWindow.
+     * @param source the time-ordered source to iterate over.
+     * @param startIndex the index in the source to start at
      * @return the last touched index
      */
-    int setItems(List<T> source, int startIndex, TimestampSelector<T> selector) {
-        LinkedList<T> list = new LinkedList<T>();
+    int setItems(EventStore<T> source, int startIndex) {
         long prev = 0, cur = 0;
         boolean first = true;
         int index;
+        int size = source.size();
         // start at the last used index, loop until the timeout between items is reached
-        for(index = startIndex; index < source.size(); index++) {
-            T itemCur = source.get(index);
-            cur = selector.select(itemCur);
+        for(index = startIndex; index < size; index++) {
+            cur = source.getTimestamp(index);
             if(first) {
                 prev = cur;
                 first = false;
                 // set the start time of this window
                 _startTime = prev;
-                list.add(itemCur);
+                _endTime = prev;
                 continue;
             }
 
@@ -66,46 +75,103 @@ class SessionTimeWindow<T> implements TimeWindow<T> {
                 break;
             } else {
                 prev = cur;
-                list.add(itemCur);
-                _size++;
             }
             _endTime = cur;
         }
 
-        _items = list;
+        _source     = source;
+        _from       = startIndex;
+        _to         = index;
+        _resolved   = true;
         return index;
     }
 
+    /**
+     * Set the range of items used in this SessionWindow from known session boundaries.
+     * @param source the time-ordered source to iterate over.
+     * @param from the index of the first item in the session
+     * @param to the index after the last item in the session
+     */
+    void setItems(EventStore<T> source, int from, int to) {
+        _source     = source;
+        _from       = from;
+        _to         = to;
+        _resolved   = true;
+        _startTime  = source.getTimestamp(from);
+        _endTime    = source.getTimestamp(to - 1);
+    }
+
+    /**
+     * Set the start and end times of this SessionWindow without resolving its range of items.
+     * @param source the time-ordered source to iterate over.
+     * @param startTime the timestamp of the first item in the session
+     * @param endTime the timestamp of the last item in the session
+     * @param hint an index at or before the first item in the session, where the boundary searches start
+     */
+    void setBounds(EventStore<T> source, long startTime, long endTime, int hint) {
+        _source     = source;
+        _startTime  = startTime;
+        _endTime    = endTime;
+        _hint       = hint;
+        _resolved   = false;
+    }
+
+    /**
+     * Returns the best known index at or before the end of this window, for use as the search hint of a later window.
+     * @return the index after the last item if the range has been resolved, otherwise the search hint
+     */
+    int searchHint() {
+        return _resolved ? _to : _hint;
+    }
+
+    private void resolve() {
+        if(!_resolved) {
+            _from       = _source.lowerBound(_hint, _startTime);
+            _to         = _source.lowerBound(_from, _endTime + 1);
+            _resolved   = true;
+        }
+    }
+
     @Override
     public int size() {
-        if(_items != null)
-            return _items.size();
-        else
-            return 0;
+        resolve();
+        return _to - _from;
     }
 
     @Override
     public Iterator<T> iterator() {
-        if(_items == null)
+        if(size() == 0)
             return Collections.emptyIterator();
+        else if(_reusable && Utils.hasIndexedAccess(_source)) {
+            if(_cursor == null)
+                _cursor = new StoreRangeIterator<>();
+            return _cursor.reset(_source, _from, _to);
+        }
         else {
-            return _items.iterator();
+            return _source.subList(_from, _to).iterator();
         }
     }
 
     @Override
     public void forEach(Consumer<? super T> action) {
-        if(_items != null && _items.size() > 0) {
-            _items.forEach(action);
+        if(size() == 0)
+            return;
+        if(_reusable && Utils.hasIndexedAccess(_source)) {
+            for(int i = _from; i < _to; i++) {
+                action.accept(_source.get(i));
+            }
+        }
+        else {
+            _source.subList(_from, _to).forEach(action);
         }
     }
 
     @Override
     public Spliterator<T> spliterator() {
-        if(_items == null) {
+        if(size() == 0) {
             return Spliterators.emptySpliterator();
         } else {
-            return _items.spliterator();
+            return _source.subList(_from, _to).spliterator();
         }
     }
 
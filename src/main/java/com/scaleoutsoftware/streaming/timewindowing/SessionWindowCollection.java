@@ -15,19 +15,18 @@
 */
 package com.scaleoutsoftware.streaming.timewindowing;
 
-import java.util.*;
+import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * The SessionWindowCollection transforms a List into an iterable collection of session windows. This wrapper
  * class can be used to manage the retention policy of the source collection as well as to insert new objects in
  * chronological order.
  */
-public class SessionWindowCollection<T> implements Iterable<TimeWindow<T>> {
-    List<T> _source;
-    TimestampSelector<T> _selector;
-    long _startTime;
+public class SessionWindowCollection<T> extends AbstractWindowCollection<T> {
     long _timeout;
+    final SessionIndex<T> _sessions;
 
     /**
      * Instantiates a new SessionWindowCollection
@@ -37,59 +36,43 @@ public class SessionWindowCollection<T> implements Iterable<TimeWindow<T>> {
      * @param timeout the minimum amount of time between session window ranges
      */
     public SessionWindowCollection(List<T> source, TimestampSelector<T> selector, long startTime, long timeout) {
-        init(source, selector, startTime, timeout);
-    }
-    private void init(List<T> source, TimestampSelector<T> selector, long startTime, long timeout) {
-        _source     = source;
-        _selector   = selector;
-        _startTime  = startTime;
+        super(source, selector, startTime);
         _timeout    = timeout;
-
-        performEviction();
+        _sessions   = addListener(new SessionIndex<>(_store, timeout));
     }
 
     /**
-     * Adds an item to the source collection in time ordered fashion.
-     * @param item the item to add
+     * Instantiates a new SessionWindowCollection over an EventStore
+     * @param store the underlying time-ordered store.
+     * @param selector the selector used to pull a timestamp from an item on insertion
+     * @param startTime the first time an object can be in a time window -- items before the start time will be evicted from the store.
+     * @param timeout the minimum amount of time between session window ranges
      */
-    public void add(T item) {
-        if(_source.size() == 0)
-            _source.add(0, item);
-        else
-            Utils.addTimeOrdered(_source, _selector, item);
-
-        performEviction();
+    public SessionWindowCollection(EventStore<T> store, TimestampSelector<T> selector, long startTime, long timeout) {
+        super(store, selector, startTime);
+        _timeout    = timeout;
+        _sessions   = addListener(new SessionIndex<>(_store, timeout));
     }
 
-    private void performEviction() {
-        Utils.performEviction(_source, _selector, _startTime);
+    @Override
+    <A, R> Function<TimeWindow<T>, R> addWindowAccumulators(WindowAggregator<? super T, A, R> aggregator) {
+        SessionAccumulators<T, A, R> sessions = addListener(new SessionAccumulators<T, A, R>(this, aggregator, _timeout));
+        return window -> sessions.result(window.getStartTime());
     }
 
     @Override
-    public Iterator<TimeWindow<T>> iterator() {
-        if(_source == null || _source.size() == 0) {
-            return Collections.emptyIterator();
-        } else {
-            long end = _selector.select(_source.get(_source.size()-1)) + 1;
-            return Windowing.toSessionWindows(_source, _selector, _startTime, end, _timeout).iterator();
-        }
+    long closeWindows(long closeTime, Consumer<? super TimeWindow<T>> trigger) {
+        return _sessions.closeSessions(_closedBefore, closeTime, trigger);
     }
 
     @Override
-    public void forEach(Consumer<? super TimeWindow<T>> action) {
-        if(_source != null && _source.size() > 0) {
-            long end = _selector.select(_source.get(_source.size()-1)) + 1;
-            Windowing.toSessionWindows(_source, _selector, _startTime, end, _timeout).forEach(action);
-        }
+    long[] windowParameters() {
+        return new long[] { 3, _timeout, 0 };
     }
 
     @Override
-    public Spliterator<TimeWindow<T>> spliterator() {
-        if(_source == null || _source.size() == 0) {
-            return Spliterators.emptySpliterator();
-        } else {
-            long end = _selector.select(_source.get(_source.size()-1)) + 1;
-            return Windowing.toSessionWindows(_source, _selector, _startTime, end, _timeout).spliterator();
-        }
+    Iterable<TimeWindow<T>> windows(long end) {
+        // sessions are read from the index instead of being detected by scanning the store
+        return _reuseWindows ? _sessions.reusingWindows() : _sessions;
     }
 }
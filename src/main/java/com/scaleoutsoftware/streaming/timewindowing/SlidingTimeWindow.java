@@ -19,13 +19,25 @@ import java.util.*;
 import java.util.function.Consumer;
 
 /**
- * A sequence of items in a collection before the specified end time has been reached.
+ * A sequence of items in a collection before the specified end time has been reached. The window is a view over a
+ * range of indices in the source collection; items are not copied. The range is resolved lazily: a window whose
+ * start and end times are read but whose items are not touched performs no search, and size() costs a galloping
+ * search of the source's timestamps without reading items. A reusable window is a flyweight that the iterator
+ * producing it moves to each following window; it also reuses one iterator over its items.
  */
 class SlidingTimeWindow<T> implements TimeWindow<T> {
 
     long _startTime;
     long _endTime;
-    List<T> _items;
+    EventStore<T> _source;
+    // the index the boundary searches start from, until the range has been resolved
+    int _hint;
+    boolean _resolved;
+    int _from;
+    int _to;
+    // when set, the window is a flyweight that is repositioned by its iterator and reuses one item iterator
+    boolean _reusable;
+    StoreRangeIterator<T> _cursor;
 
     SlidingTimeWindow(long startTime, long endTime) {
         _startTime  = startTime;
@@ -33,47 +45,71 @@ class SlidingTimeWindow<T> implements TimeWindow<T> {
     }
 
     /**
-     * Set the items in this window from the parameter source collection
-     * @param source the source collection to pull items from
-     * @param startIndex the index to start scanning from
-     * @param selector the selector used to pull timestamps from items
-     * @return the last index touched
+     * Set the source of this window without resolving its range of items.
+     * @param source the time-ordered source to pull items from
+     * @param hint an index at or before this window's first item, where the boundary searches start
      */
-    int setItems(List<T> source, int startIndex, TimestampSelector<T> selector) {
-        boolean foundItem = false;
-        LinkedList<T> items = null;
-        int i;
-        // loop from the last index used, until we run out of items or the timestamp is greater than the end time
-        // for this window
-        for(i = startIndex; i < source.size(); i++) {
-            T item = source.get(i);
-            long timestamp = selector.select(item);
-            if(timestamp < _startTime)
-                continue;
-
-            if(timestamp >= _endTime)
-                break;
-
-            if(!foundItem) {
-                foundItem = true;
-                startIndex = i;
-                items = new LinkedList<T>();
-            }
+    void setBounds(EventStore<T> source, int hint) {
+        _source     = source;
+        _hint       = hint;
+        _resolved   = false;
+    }
 
-            items.add(item);
-        }
+    /**
+     * Moves this window to new start and end times without resolving its range of items.
+     * @param source the time-ordered source to pull items from
+     * @param startTime the start time of the window
+     * @param endTime the end time (exclusive) of the window
+     * @param hint an index at or before this window's first item, where the boundary searches start
+     */
+    void setBounds(EventStore<T> source, long startTime, long endTime, int hint) {
+        _startTime  = startTime;
+        _endTime    = endTime;
+        setBounds(source, hint);
+    }
 
-        _items = items;
-        return startIndex;
+    /**
+     * Set the range of items in this window from the parameter source
+     * @param source the time-ordered source to pull items from
+     * @param startIndex the index to start searching from
+     * @return the index of the first item at or after this window's start time
+     */
+    int setItems(EventStore<T> source, int startIndex) {
+        setBounds(source, startIndex);
+        resolve();
+        return _from;
+    }
+
+    /**
+     * Returns the best known index at or before the first item of this window, for use as the search hint of a later
+     * window.
+     * @return the index of the first item if the range has been resolved, otherwise the search hint
+     */
+    int searchHint() {
+        return _resolved ? _from : _hint;
+    }
+
+    /**
+     * Returns whether this window is known to hold no item without resolving its range.
+     * @return true if the range has been resolved and is empty
+     */
+    boolean isKnownEmpty() {
+        return _resolved && _from == _to;
+    }
+
+    private void resolve() {
+        if(!_resolved) {
+            // windows start in increasing order, so neither boundary can be before the previous window's start index
+            _from       = _source.lowerBound(_hint, _startTime);
+            _to         = _source.lowerBound(_from, _endTime);
+            _resolved   = true;
+        }
     }
 
     @Override
     public int size() {
-        if(_items == null) {
-            return 0;
-        } else {
-            return _items.size();
-        }
+        resolve();
+        return _to - _from;
     }
 
     @Override
@@ -88,26 +124,38 @@ class SlidingTimeWindow<T> implements TimeWindow<T> {
 
     @Override
     public Iterator<T> iterator() {
-        if(_items == null)
+        if(size() == 0)
             return Collections.emptyIterator();
+        else if(_reusable && Utils.hasIndexedAccess(_source)) {
+            if(_cursor == null)
+                _cursor = new StoreRangeIterator<>();
+            return _cursor.reset(_source, _from, _to);
+        }
         else {
-            return _items.iterator();
+            return _source.subList(_from, _to).iterator();
         }
     }
 
     @Override
     public void forEach(Consumer<? super T> action) {
-        if(_items != null && _items.size() > 0) {
-            _items.forEach(action);
+        if(size() == 0)
+            return;
+        if(_reusable && Utils.hasIndexedAccess(_source)) {
+            for(int i = _from; i < _to; i++) {
+                action.accept(_source.get(i));
+            }
+        }
+        else {
+            _source.subList(_from, _to).forEach(action);
         }
     }
 
     @Override
     public Spliterator<T> spliterator() {
-        if(_items == null) {
+        if(size() == 0) {
             return Spliterators.emptySpliterator();
         } else {
-            return _items.spliterator();
+            return _source.subList(_from, _to).spliterator();
         }
     }
 
@@ -15,18 +15,16 @@
 */
 package com.scaleoutsoftware.streaming.timewindowing;
 
-import java.util.*;
+import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * The SlidingWindowCollection transforms a collection into an iterable collection of overlapping time windows. This
  * wrapper class can be used to manage the retention policy and add objects in chronological order to the underlying
  * source collection.
  */
-public class SlidingWindowCollection<T> implements Iterable<TimeWindow<T>> {
-    List<T> _source;
-    private TimestampSelector<T> _selector;
-    long _startTime;
+public class SlidingWindowCollection<T> extends AbstractWindowCollection<T> {
     long _windowDuration;
     long _every;
 
@@ -39,61 +37,77 @@ public class SlidingWindowCollection<T> implements Iterable<TimeWindow<T>> {
      * @param startTime the first time an object can be in a time window -- items before the start time will be evicted from the source collection.
      */
     public SlidingWindowCollection(List<T> source, TimestampSelector<T> selector, long windowDuration, long every, long startTime) {
-        init(source, selector, windowDuration, every, startTime);
+        super(source, selector, startTime);
+        _windowDuration = windowDuration;
+        _every          = every;
     }
 
-    private void init(List<T> source, TimestampSelector<T> selector, long windowDuration, long every, long startTime) {
-        _source         = source;
-        _selector       = selector;
+    /**
+     * Instantiates a new SlidingWindowCollection over an EventStore
+     * @param store the underlying time-ordered store
+     * @param selector the interface used to select a timestamp from an item
+     * @param windowDuration the duration of a time window
+     * @param every the time between the starting point of each time window
+     * @param startTime the first time an object can be in a time window -- items before the start time will be evicted from the store.
+     */
+    public SlidingWindowCollection(EventStore<T> store, TimestampSelector<T> selector, long windowDuration, long every, long startTime) {
+        super(store, selector, startTime);
         _windowDuration = windowDuration;
         _every          = every;
-        _startTime      = startTime;
-
-        performEviction();
     }
 
     /**
-     * Adds an item to the underlying source collection in chronological order.
-     * @param item the item to add
+     * Registers an aggregator that is applied to every window of this collection. The aggregator's accumulators are
+     * updated as items are added and evicted, so reading the results costs O(windows) and never touches the items in
+     * the source collection. The returned results enumerate the same windows as iterating this collection, and
+     * reflect items added after this call.
+     * @param aggregator the aggregator to apply to each window
+     * @param <A> the type of the aggregator's accumulator
+     * @param <R> the type of the aggregator's result
+     * @return the live results of the aggregator for each window
      */
-    public void add(T item) {
-        if(_source.size() == 0)
-            _source.add(0, item);
-        else
-            Utils.addTimeOrdered(_source, _selector, item);
+    public <A, R> Iterable<WindowAggregate<R>> addAggregation(WindowAggregator<? super T, A, R> aggregator) {
+        return addListener(new PaneAccumulators<T, A, R>(this, aggregator, _windowDuration, _every));
+    }
 
-        performEviction();
+    /**
+     * Registers an aggregator that is applied to the items within a range of time ending at the most recent item, for
+     * example the maximum heart rate over the last five minutes. The result is maintained as items are added and
+     * evicted at O(1) amortized cost per item, even for aggregates like min and max that cannot subtract an item
+     * that leaves the window.
+     * @param aggregator the aggregator to apply to the rolling window
+     * @param range the length of time covered by the rolling window
+     * @param <A> the type of the aggregator's accumulator
+     * @param <R> the type of the aggregator's result
+     * @return the live result of the aggregator over the rolling window
+     */
+    public <A, R> WindowAggregate<R> addRollingAggregation(WindowAggregator<? super T, A, R> aggregator, long range) {
+        return addListener(new RollingAggregation<T, A, R>(this, aggregator, range));
     }
 
-    private void performEviction() {
-        Utils.performEviction(_source, _selector, _startTime);
+    @Override
+    <A, R> Function<TimeWindow<T>, R> addWindowAccumulators(WindowAggregator<? super T, A, R> aggregator) {
+        PaneAccumulators<T, A, R> panes = addListener(new PaneAccumulators<T, A, R>(this, aggregator, _windowDuration, _every));
+        return window -> panes.result(window.getStartTime(), window.getEndTime());
     }
+
     @Override
-    public Iterator<TimeWindow<T>> iterator() {
-        if(_source == null || _source.size() == 0) {
-            return Collections.emptyIterator();
-        } else {
-            long end = _selector.select(_source.get(_source.size()-1)) + 1;
-            return Windowing.toSlidingWindows(_source, _selector, _startTime, end, _windowDuration, _every).iterator();
-        }
+    long closeWindows(long closeTime, Consumer<? super TimeWindow<T>> trigger) {
+        return closeSlidingWindows(closeTime, trigger, _windowDuration, _every);
     }
 
     @Override
-    public void forEach(Consumer<? super TimeWindow<T>> action) {
-        if(_source != null && _source.size() != 0) {
-            long end = _selector.select(_source.get(_source.size()-1)) + 1;
-            Windowing.toSlidingWindows(_source, _selector, _startTime, end, _windowDuration, _every).forEach(action);
-        }
+    long windowStep() {
+        return _every;
     }
 
     @Override
-    public Spliterator<TimeWindow<T>> spliterator() {
-        if (_source == null || _source.size() == 0) {
-            return Spliterators.emptySpliterator();
-        } else {
-            long end = _selector.select(_source.get(_source.size() - 1)) + 1;
-            return Windowing.toSlidingWindows(_source, _selector, _startTime, end, _windowDuration, _every).spliterator();
-        }
+    long[] windowParameters() {
+        return new long[] { 1, _windowDuration, _every };
     }
 
+    @Override
+    Iterable<TimeWindow<T>> windows(long end) {
+        return Windowing.slidingWindows(_store, _startTime, end, _windowDuration, _every, _reuseWindows, _skipEmptyWindows);
+    }
 }
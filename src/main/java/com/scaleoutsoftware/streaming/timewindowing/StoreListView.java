@@ -0,0 +1,48 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A read-only List view over a range of indices in an EventStore.
+ */
+class StoreListView<T> extends AbstractList<T> implements RandomAccess {
+    final EventStore<T> _store;
+    final int _from;
+    final int _to;
+
+    StoreListView(EventStore<T> store, int fromIndex, int toIndex) {
+        if(fromIndex < 0 || toIndex > store.size() || fromIndex > toIndex)
+            throw new IndexOutOfBoundsException("fromIndex: " + fromIndex + ", toIndex: " + toIndex + ", size: " + store.size());
+        _store  = store;
+        _from   = fromIndex;
+        _to     = toIndex;
+    }
+
+    @Override
+    public T get(int index) {
+        if(index < 0 || index >= _to - _from)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + (_to - _from));
+        return _store.get(_from + index);
+    }
+
+    @Override
+    public int size() {
+        return _to - _from;
+    }
+}
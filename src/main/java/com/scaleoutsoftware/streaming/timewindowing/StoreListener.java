@@ -0,0 +1,44 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+/**
+ * Receives notifications about changes to the store behind a window collection so that derived state can be kept up
+ * to date incrementally.
+ */
+interface StoreListener<T> {
+
+    /**
+     * Called after an item has been added to the store.
+     * @param item the item that was added
+     * @param timestamp the timestamp of the item
+     */
+    void onAdd(T item, long timestamp);
+
+    /**
+     * Called after items before the parameter start time have been evicted from the store.
+     * @param startTime the start time of the collection
+     */
+    void onEvict(long startTime);
+
+    /**
+     * Called when an empty store is about to be refilled from a checkpoint taken at the parameter start time, which
+     * may differ from the start time the listener was registered at.
+     * @param startTime the start time of the restored collection
+     */
+    default void onRestore(long startTime) {
+    }
+}
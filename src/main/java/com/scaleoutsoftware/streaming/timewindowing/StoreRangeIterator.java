@@ -0,0 +1,55 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An iterator over a range of indices in an EventStore that can be repositioned, so that a reused window iterates
+ * its items without allocating.
+ */
+class StoreRangeIterator<T> implements Iterator<T> {
+    EventStore<T> _store;
+    int _index;
+    int _to;
+
+    /**
+     * Repositions this iterator at the start of a range.
+     * @param store the store to read items from
+     * @param fromIndex the index of the first item
+     * @param toIndex the index after the last item
+     * @return this iterator
+     */
+    StoreRangeIterator<T> reset(EventStore<T> store, int fromIndex, int toIndex) {
+        _store  = store;
+        _index  = fromIndex;
+        _to     = toIndex;
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return _index < _to;
+    }
+
+    @Override
+    public T next() {
+        if(_index >= _to)
+            throw new NoSuchElementException();
+        return _store.get(_index++);
+    }
+}
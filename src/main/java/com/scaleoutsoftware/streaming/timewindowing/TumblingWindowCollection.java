@@ -15,71 +15,71 @@
 */
 package com.scaleoutsoftware.streaming.timewindowing;
 
-import java.util.*;
+import java.util.List;
 import java.util.function.Consumer;
+import java.util.function.Function;
 /**
  * The TumblingWindowCollection transforms a collection into an iterable collection of sequential time windows. This
  * wrapper class can be used to manage the retention policy and add objects in chronological order to the underlying
  * source collection.
  */
-public class TumblingWindowCollection<T> implements Iterable<TimeWindow<T>> {
-    List<T> _source;
-    private TimestampSelector<T> _selector;
-    long _startTime;
+public class TumblingWindowCollection<T> extends AbstractWindowCollection<T> {
     long _windowDuration;
 
     public TumblingWindowCollection(List<T> source, TimestampSelector<T> selector, long windowDuration, long startTime) {
-        init(source, selector, windowDuration, startTime);
+        super(source, selector, startTime);
+        _windowDuration = windowDuration;
     }
 
-    private void init(List<T> source, TimestampSelector<T> selector, long windowDuration,  long startTime) {
-        _source         = source;
-        _selector       = selector;
+    /**
+     * Instantiates a new TumblingWindowCollection over an EventStore
+     * @param store the underlying time-ordered store
+     * @param selector the interface used to select a timestamp from an item
+     * @param windowDuration the duration of a time window
+     * @param startTime the first time an object can be in a time window -- items before the start time will be evicted from the store.
+     */
+    public TumblingWindowCollection(EventStore<T> store, TimestampSelector<T> selector, long windowDuration, long startTime) {
+        super(store, selector, startTime);
         _windowDuration = windowDuration;
-        _startTime      = startTime;
-
-        performEviction();
     }
 
-    public void add(T item) {
-        if(_source.size() == 0)
-            _source.add(0, item);
-        else
-            Utils.addTimeOrdered(_source, _selector, item);
+    /**
+     * Registers an aggregator that is applied to every window of this collection. The aggregator's accumulators are
+     * updated as items are added and evicted, so reading the results costs O(windows) and never touches the items in
+     * the source collection. The returned results enumerate the same windows as iterating this collection, and
+     * reflect items added after this call.
+     * @param aggregator the aggregator to apply to each window
+     * @param <A> the type of the aggregator's accumulator
+     * @param <R> the type of the aggregator's result
+     * @return the live results of the aggregator for each window
+     */
+    public <A, R> Iterable<WindowAggregate<R>> addAggregation(WindowAggregator<? super T, A, R> aggregator) {
+        return addListener(new PaneAccumulators<T, A, R>(this, aggregator, _windowDuration, _windowDuration));
+    }
 
-        performEviction();
+    @Override
+    <A, R> Function<TimeWindow<T>, R> addWindowAccumulators(WindowAggregator<? super T, A, R> aggregator) {
+        PaneAccumulators<T, A, R> panes = addListener(new PaneAccumulators<T, A, R>(this, aggregator, _windowDuration, _windowDuration));
+        return window -> panes.result(window.getStartTime(), window.getEndTime());
     }
 
-    private void performEviction() {
-        Utils.performEviction(_source, _selector, _startTime);
+    @Override
+    long closeWindows(long closeTime, Consumer<? super TimeWindow<T>> trigger) {
+        return closeSlidingWindows(closeTime, trigger, _windowDuration, _windowDuration);
     }
 
     @Override
-    public Iterator<TimeWindow<T>> iterator() {
-        if(_source == null || _source.size() == 0) {
-            return Collections.emptyIterator();
-        } else {
-            long end = _selector.select(_source.get(_source.size()-1)) + 1;
-            return Windowing.toTumblingWindows(_source, _selector, _startTime, end, _windowDuration).iterator();
-        }
+    long windowStep() {
+        return _windowDuration;
     }
 
     @Override
-    public void forEach(Consumer<? super TimeWindow<T>> action) {
-        if(_source != null && _source.size() != 0) {
-            long end = _selector.select(_source.get(_source.size()-1)) + 1;
-            Windowing.toTumblingWindows(_source, _selector, _startTime, end, _windowDuration).forEach(action);
-        }
+    long[] windowParameters() {
+        return new long[] { 2, _windowDuration, _windowDuration };
     }
 
     @Override
-    public Spliterator<TimeWindow<T>> spliterator() {
-        if(_source == null || _source.size() == 0) {
-            return Spliterators.emptySpliterator();
-        } else {
-            long end = _selector.select(_source.get(_source.size()-1)) + 1;
-            return Windowing.toTumblingWindows(_source, _selector, _startTime, end, _windowDuration).spliterator();
-        }
+    Iterable<TimeWindow<T>> windows(long end) {
+        return Windowing.slidingWindows(_store, _startTime, end, _windowDuration, _windowDuration, _reuseWindows, _skipEmptyWindows);
     }
 }
-
@@ -16,6 +16,8 @@
 package com.scaleoutsoftware.streaming.timewindowing;
 
 import java.util.List;
+import java.util.ListIterator;
+import java.util.RandomAccess;
 
 /**
  * Helper functions used within the library.
@@ -28,51 +30,161 @@ public class Utils {
      * @param selector the timestamp selector used to pull a timestamp from an item
      * @param toAdd the item to add
      * @param <T> the type of items in the source collection
+     * @return the index the item was inserted at
      */
-    static <T> void addTimeOrdered(List<T> source, TimestampSelector<T> selector, T toAdd) {
-        int index = source.size() - 1;
+    static <T> int addTimeOrdered(List<T> source, TimestampSelector<T> selector, T toAdd) {
         long timeToAdd = selector.select(toAdd);
-        long last = selector.select(source.get(index));
-
-        if(timeToAdd < last) {
-            while(index > 0) {
-                if(timeToAdd < last) {
-                    index--;
-                    last = selector.select(source.get(index));
-                } else {
-                    index++;
-                    break;
-                }
+        int index = source.size();
+        ListIterator<T> it = source.listIterator(index);
+        // walk back over any items that are newer than the item being added
+        while(it.hasPrevious()) {
+            if(timeToAdd < selector.select(it.previous())) {
+                index--;
+            } else {
+                break;
             }
-            source.add(index, toAdd);
-        } else {
-            source.add(++index, toAdd);
         }
+        source.add(index, toAdd);
+        return index;
     }
 
     /**
-     * Removes items from the parameter source collection that have timestamps before the start time
-     * @param source the source collection
-     * @param selector the timestamp selector used to pull a timestamp from an item
+     * Removes items from the parameter store that have timestamps before the start time
+     * @param store the time-ordered store
      * @param startTime the start of the collection
-     * @param <T> the type of the items in the source collection
+     * @param <T> the type of the items in the store
+     * @return the number of items removed
      */
-    static <T> void performEviction(List<T> source, TimestampSelector<T> selector, long startTime) {
-        if(source != null) {
-            int from = 0, to = 0;
-            boolean clear = false;
-            while (to < source.size()) {
-                if (selector.select(source.get(to)) < startTime) {
-                    to++;
-                    clear = true;
-                } else {
-                    break;
-                }
-            }
+    static <T> int performEviction(EventStore<T> store, long startTime) {
+        int count = store.lowerBound(0, startTime);
+        if(count > 0)
+            store.removeFirst(count);
+        return count;
+    }
+
+    /**
+     * Returns whether reading the parameter store by index costs O(1) per item when done in order. A store over a List
+     * without random access, such as a LinkedList, walks the list on every read.
+     * @param store the store
+     * @return true if sequential reads by index are cheap
+     */
+    static boolean hasIndexedAccess(EventStore<?> store) {
+        return !(store instanceof ListEventStore) || ((ListEventStore<?>)store)._source instanceof RandomAccess;
+    }
+
+    /**
+     * Returns whether reads of the parameter store share mutable state, such as the cursor a SelectorEventStore keeps
+     * over a List without random access, so that the store can only be read by one thread at a time.
+     * @param store the store
+     * @return true if the store must not be read concurrently
+     */
+    static boolean isThreadConfined(EventStore<?> store) {
+        return store instanceof SelectorEventStore && !((SelectorEventStore<?>)store)._randomAccess;
+    }
+
+    /**
+     * Returns the index of the first element in the parameter range of a sorted timestamp array that is not earlier
+     * than the parameter time. The boundary is located with an exponential (galloping) search from the start of the
+     * range followed by a binary search.
+     * @param timestamps the sorted timestamps
+     * @param fromIndex the first index of the range (inclusive)
+     * @param toIndex the last index of the range (exclusive)
+     * @param time the time to search for
+     * @return the index of the first timestamp greater than or equal to the time, or toIndex if there is no such
+     * timestamp
+     */
+    static int lowerBound(long[] timestamps, int fromIndex, int toIndex, long time) {
+        int low = fromIndex;
+        int step = 1;
+        int high = fromIndex;
+        while(high < toIndex && timestamps[high] < time) {
+            low = high + 1;
+            high = fromIndex + step;
+            step <<= 1;
+        }
+        if(high > toIndex)
+            high = toIndex;
 
-            if (clear)
-                source.subList(from, to).clear();
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(timestamps[mid] < time)
+                low = mid + 1;
+            else
+                high = mid;
         }
+        return low;
     }
 
+    /**
+     * Returns the index of the first element in the parameter range of a sorted timestamp array that is later than
+     * the parameter time: the position at which an item with that time is inserted after any equal timestamps.
+     * @param timestamps the sorted timestamps
+     * @param fromIndex the first index of the range (inclusive)
+     * @param toIndex the last index of the range (exclusive)
+     * @param time the time to search for
+     * @return the index of the first timestamp greater than the time, or toIndex if there is no such timestamp
+     */
+    static int upperBound(long[] timestamps, int fromIndex, int toIndex, long time) {
+        int low = fromIndex, high = toIndex;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(timestamps[mid] <= time)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+
+    /**
+     * Sorts a batch of items by timestamp, keeping items with equal timestamps in their original order. Batches that
+     * are already in order are detected in a single pass and left untouched.
+     * @param items the items, whose first count elements are sorted
+     * @param timestamps the timestamps of the items
+     * @param count the number of items in the batch
+     */
+    static void sortByTimestamp(Object[] items, long[] timestamps, int count) {
+        int i = 1;
+        while(i < count && timestamps[i - 1] <= timestamps[i])
+            i++;
+        if(i >= count)
+            return;
+
+        // bottom-up merge sort, alternating between the batch arrays and a scratch copy
+        Object[] srcItems = items, dstItems = new Object[count];
+        long[] srcTimes = timestamps, dstTimes = new long[count];
+        for(int width = 1; width < count; width <<= 1) {
+            for(int low = 0; low < count; low += width << 1) {
+                int mid = Math.min(low + width, count), high = Math.min(low + (width << 1), count);
+                int left = low, right = mid, out = low;
+                while(left < mid && right < high) {
+                    if(srcTimes[right] < srcTimes[left]) {
+                        dstItems[out] = srcItems[right];
+                        dstTimes[out++] = srcTimes[right++];
+                    } else {
+                        dstItems[out] = srcItems[left];
+                        dstTimes[out++] = srcTimes[left++];
+                    }
+                }
+                while(left < mid) {
+                    dstItems[out] = srcItems[left];
+                    dstTimes[out++] = srcTimes[left++];
+                }
+                while(right < high) {
+                    dstItems[out] = srcItems[right];
+                    dstTimes[out++] = srcTimes[right++];
+                }
+            }
+            Object[] swapItems = srcItems;
+            srcItems = dstItems;
+            dstItems = swapItems;
+            long[] swapTimes = srcTimes;
+            srcTimes = dstTimes;
+            dstTimes = swapTimes;
+        }
+        if(srcItems != items) {
+            System.arraycopy(srcItems, 0, items, 0, count);
+            System.arraycopy(srcTimes, 0, timestamps, 0, count);
+        }
+    }
 }
@@ -0,0 +1,56 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+/**
+ * Computes a result over the items in a time window incrementally. Items are folded into an accumulator as they are
+ * added to a window collection, so reading a window's result never touches the items themselves.
+ * @param <T> the type of the items being aggregated
+ * @param <A> the type of the accumulator
+ * @param <R> the type of the result
+ */
+public interface WindowAggregator<T, A, R> {
+
+    /**
+     * Creates a new, empty accumulator.
+     * @return an empty accumulator
+     */
+    A createAccumulator();
+
+    /**
+     * Folds an item into an accumulator.
+     * @param accumulator the accumulator to update
+     * @param item the item to fold into the accumulator
+     * @return the updated accumulator, which may be the same instance as the parameter accumulator
+     */
+    A accumulate(A accumulator, T item);
+
+    /**
+     * Combines two accumulators that cover adjacent ranges of items. The left accumulator may be modified and
+     * returned; the right accumulator must not be modified.
+     * @param left the accumulator covering the earlier items
+     * @param right the accumulator covering the later items
+     * @return the combined accumulator
+     */
+    A combine(A left, A right);
+
+    /**
+     * Returns the result of an accumulator.
+     * @param accumulator the accumulator
+     * @return the result
+     */
+    R getResult(A accumulator);
+}
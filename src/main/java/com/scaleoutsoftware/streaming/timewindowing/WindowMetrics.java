@@ -0,0 +1,183 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A WindowMetricsListener that accumulates the measurements of a window collection and exposes them through JMX.
+ * Counters can be read from any thread while the collection is in use.
+ */
+public class WindowMetrics implements WindowMetricsListener, WindowMetricsMXBean {
+    static final int BUCKETS = 32;
+
+    final LongAdder _inserts = new LongAdder();
+    final LongAdder _outOfOrderInserts = new LongAdder();
+    final AtomicLongArray _distances = new AtomicLongArray(BUCKETS);
+    final LongAdder _selectorInvocations = new LongAdder();
+    final LongAdder _discardedItems = new LongAdder();
+    final LongAdder _evictions = new LongAdder();
+    final LongAdder _evictedItems = new LongAdder();
+    final LongAdder _iterations = new LongAdder();
+    final LongAdder _windows = new LongAdder();
+    final LongAdder _emptyWindows = new LongAdder();
+    final LongAdder _iterationNanos = new LongAdder();
+    final LongAccumulator _maxIterationNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Registers these metrics with the platform MBean server.
+     * @param name the name that identifies the collection, used as the name key of the MBean's ObjectName
+     * @return the ObjectName the metrics were registered under
+     * @throws JMException if the metrics cannot be registered, for example because the name is already in use
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName(WindowMetrics.class.getPackage().getName() + ":type=WindowMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        return objectName;
+    }
+
+    /**
+     * Unregisters these metrics from the platform MBean server.
+     * @param objectName the ObjectName returned by register()
+     * @throws JMException if the metrics are not registered under the name
+     */
+    public static void unregister(ObjectName objectName) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        server.unregisterMBean(objectName);
+    }
+
+    @Override
+    public void onInsert(int distance) {
+        _inserts.increment();
+        if(distance > 0)
+            _outOfOrderInserts.increment();
+        _distances.incrementAndGet(Math.min(BUCKETS - 1, 32 - Integer.numberOfLeadingZeros(distance)));
+    }
+
+    @Override
+    public void onSelect(int count) {
+        _selectorInvocations.add(count);
+    }
+
+    @Override
+    public void onDiscard() {
+        _discardedItems.increment();
+    }
+
+    @Override
+    public void onEvict(int count) {
+        _evictions.increment();
+        _evictedItems.add(count);
+    }
+
+    @Override
+    public void onIteration(int windows, int emptyWindows, long nanos) {
+        _iterations.increment();
+        _windows.add(windows);
+        _emptyWindows.add(emptyWindows);
+        _iterationNanos.add(nanos);
+        _maxIterationNanos.accumulate(nanos);
+    }
+
+    @Override
+    public long getInserts() {
+        return _inserts.sum();
+    }
+
+    @Override
+    public long getOutOfOrderInserts() {
+        return _outOfOrderInserts.sum();
+    }
+
+    @Override
+    public long[] getOutOfOrderDistanceHistogram() {
+        long[] histogram = new long[BUCKETS];
+        for(int i = 0; i < BUCKETS; i++) {
+            histogram[i] = _distances.get(i);
+        }
+        return histogram;
+    }
+
+    @Override
+    public long getSelectorInvocations() {
+        return _selectorInvocations.sum();
+    }
+
+    @Override
+    public long getDiscardedItems() {
+        return _discardedItems.sum();
+    }
+
+    @Override
+    public long getEvictions() {
+        return _evictions.sum();
+    }
+
+    @Override
+    public long getEvictedItems() {
+        return _evictedItems.sum();
+    }
+
+    @Override
+    public long getIterations() {
+        return _iterations.sum();
+    }
+
+    @Override
+    public long getWindowsMaterialized() {
+        return _windows.sum();
+    }
+
+    @Override
+    public long getEmptyWindows() {
+        return _emptyWindows.sum();
+    }
+
+    @Override
+    public double getMeanIterationNanos() {
+        long iterations = _iterations.sum();
+        return iterations == 0 ? 0 : (double)_iterationNanos.sum() / iterations;
+    }
+
+    @Override
+    public long getMaxIterationNanos() {
+        return _maxIterationNanos.get();
+    }
+
+    @Override
+    public void reset() {
+        _inserts.reset();
+        _outOfOrderInserts.reset();
+        for(int i = 0; i < BUCKETS; i++) {
+            _distances.set(i, 0);
+        }
+        _selectorInvocations.reset();
+        _discardedItems.reset();
+        _evictions.reset();
+        _evictedItems.reset();
+        _iterations.reset();
+        _windows.reset();
+        _emptyWindows.reset();
+        _iterationNanos.reset();
+        _maxIterationNanos.reset();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+/**
+ * Receives runtime measurements from a window collection. A listener is optional: a collection without one performs
+ * no measurement at all. Methods are called on the thread that inserts items into the collection or iterates it, and
+ * should return quickly.
+ */
+public interface WindowMetricsListener {
+
+    /**
+     * Called when an item is inserted into the collection.
+     * @param distance the number of newer items the item was inserted before; 0 for an item that arrived in order
+     */
+    void onInsert(int distance);
+
+    /**
+     * Called when the timestamp selector has been invoked on added items.
+     * @param count the number of items the selector was invoked on
+     */
+    void onSelect(int count);
+
+    /**
+     * Called when an item is discarded because it is before the start time or belongs only to closed windows.
+     */
+    void onDiscard();
+
+    /**
+     * Called when items have been evicted from the collection.
+     * @param count the number of items evicted
+     */
+    void onEvict(int count);
+
+    /**
+     * Called when a pass over the windows of the collection has completed: forEach() returned, or an iterator,
+     * spliterator or stream over the windows was exhausted.
+     * @param windows the number of windows materialized
+     * @param emptyWindows the number of materialized windows found to hold no item; windows whose items were never read
+     *                     are not looked up and are not counted
+     * @param nanos the duration of the pass, in nanoseconds
+     */
+    void onIteration(int windows, int emptyWindows, long nanos);
+}
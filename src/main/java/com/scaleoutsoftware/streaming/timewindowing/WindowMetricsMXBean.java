@@ -0,0 +1,101 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+/**
+ * The management interface of WindowMetrics, exposing the measurements of a window collection through JMX.
+ */
+public interface WindowMetricsMXBean {
+
+    /**
+     * Returns the number of items inserted.
+     * @return the number of items inserted
+     */
+    long getInserts();
+
+    /**
+     * Returns the number of items inserted before at least one newer item.
+     * @return the number of out-of-order inserts
+     */
+    long getOutOfOrderInserts();
+
+    /**
+     * Returns a histogram of the out-of-order distance of inserted items. Bucket 0 counts in-order items and bucket i
+     * counts items inserted before 2^(i-1) to 2^i - 1 newer items; the last bucket also counts longer distances.
+     * @return the count of inserts in each bucket
+     */
+    long[] getOutOfOrderDistanceHistogram();
+
+    /**
+     * Returns the number of timestamp selector invocations.
+     * @return the number of selector invocations
+     */
+    long getSelectorInvocations();
+
+    /**
+     * Returns the number of items discarded as too old.
+     * @return the number of discarded items
+     */
+    long getDiscardedItems();
+
+    /**
+     * Returns the number of evictions that removed at least one item.
+     * @return the number of evictions
+     */
+    long getEvictions();
+
+    /**
+     * Returns the number of items evicted.
+     * @return the number of items evicted
+     */
+    long getEvictedItems();
+
+    /**
+     * Returns the number of completed passes over the windows.
+     * @return the number of iterations
+     */
+    long getIterations();
+
+    /**
+     * Returns the number of windows materialized by all passes.
+     * @return the number of windows materialized
+     */
+    long getWindowsMaterialized();
+
+    /**
+     * Returns the number of materialized windows found to hold no item. Windows are not looked up to be counted, so a
+     * window whose items were never read is not counted.
+     * @return the number of empty windows
+     */
+    long getEmptyWindows();
+
+    /**
+     * Returns the mean duration of a pass over the windows.
+     * @return the mean iteration latency, in nanoseconds
+     */
+    double getMeanIterationNanos();
+
+    /**
+     * Returns the longest duration of a pass over the windows.
+     * @return the maximum iteration latency, in nanoseconds
+     */
+    long getMaxIterationNanos();
+
+    /**
+     * Resets every measurement to zero.
+     */
+    void reset();
+}
@@ -0,0 +1,147 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A push-based stage that windows a live feed of items. Items are passed to accept() as they arrive, and each window
+ * is passed to the registered listeners once, as soon as the watermark (the most recent timestamp, or a time passed to
+ * advanceWatermark()) passes its end by the allowed lateness. The items of closed windows are evicted, so earlier
+ * windows are never materialized again and an in-order item costs O(1) amortized plus the work of the windows it
+ * closes.
+ */
+public class WindowedStream<T> implements Consumer<T> {
+    final AbstractWindowCollection<T> _windows;
+    final List<Consumer<? super TimeWindow<T>>> _listeners = new ArrayList<>();
+
+    WindowedStream(AbstractWindowCollection<T> windows) {
+        _windows = windows;
+        _windows._evictClosed = true;
+        _windows.onWindowClose(this::closed);
+    }
+
+    /**
+     * Instantiates a new WindowedStream of sliding windows.
+     * @param selector the interface used to select a timestamp from an item
+     * @param windowDuration the duration of a time window
+     * @param every the time between the starting point of each time window
+     * @param startTime the first time an object can be in a time window -- items before the start time are discarded.
+     * @param <T> the type of the items
+     * @return a new WindowedStream
+     */
+    public static <T> WindowedStream<T> sliding(TimestampSelector<T> selector, long windowDuration, long every, long startTime) {
+        return new WindowedStream<>(new SlidingWindowCollection<>(new RingBufferEventStore<T>(), selector, windowDuration, every, startTime));
+    }
+
+    /**
+     * Instantiates a new WindowedStream of tumbling windows.
+     * @param selector the interface used to select a timestamp from an item
+     * @param windowDuration the duration of a time window
+     * @param startTime the first time an object can be in a time window -- items before the start time are discarded.
+     * @param <T> the type of the items
+     * @return a new WindowedStream
+     */
+    public static <T> WindowedStream<T> tumbling(TimestampSelector<T> selector, long windowDuration, long startTime) {
+        return new WindowedStream<>(new TumblingWindowCollection<>(new RingBufferEventStore<T>(), selector, windowDuration, startTime));
+    }
+
+    /**
+     * Instantiates a new WindowedStream of session windows.
+     * @param selector the interface used to select a timestamp from an item
+     * @param startTime the first time an object can be in a time window -- items before the start time are discarded.
+     * @param timeout the minimum amount of time between session window ranges
+     * @param <T> the type of the items
+     * @return a new WindowedStream
+     */
+    public static <T> WindowedStream<T> session(TimestampSelector<T> selector, long startTime, long timeout) {
+        return new WindowedStream<>(new SessionWindowCollection<>(new RingBufferEventStore<T>(), selector, startTime, timeout));
+    }
+
+    /**
+     * Registers a listener that is called with each window that holds items when it closes; empty windows are skipped.
+     * The window is a view over the items of the stream and is only valid for the duration of the call.
+     * @param listener the action to perform on each closed window
+     */
+    public void onWindow(Consumer<? super TimeWindow<T>> listener) {
+        _listeners.add(listener);
+    }
+
+    /**
+     * Registers a listener that is called with the aggregate of each window when it closes. The aggregate is
+     * accumulated as items arrive, so closing a window combines partial results instead of visiting its items.
+     * @param aggregator the aggregator applied to the items of each window
+     * @param listener the action to perform on the aggregate of each closed window
+     * @param <A> the type of the accumulator
+     * @param <R> the type of the aggregate result
+     */
+    public <A, R> void onAggregate(WindowAggregator<? super T, A, R> aggregator, Consumer<? super WindowAggregate<R>> listener) {
+        Function<TimeWindow<T>, R> results = _windows.addWindowAccumulators(aggregator);
+        _listeners.add(window -> listener.accept(new PaneAccumulators.AggregateWindow<>(window.getStartTime(), window.getEndTime(), results.apply(window))));
+    }
+
+    /**
+     * Registers a side channel for items that arrive after every window they belong to has closed. Without a side
+     * channel, such items are discarded.
+     * @param handler the action to perform on each late item
+     */
+    public void onLateItem(Consumer<? super T> handler) {
+        _windows.onLateItem(handler);
+    }
+
+    /**
+     * Sets how long after the watermark passes the end of a window the window stays open to late items.
+     * @param allowedLateness the allowed lateness, in the units of the timestamps
+     */
+    public void setAllowedLateness(long allowedLateness) {
+        _windows.setAllowedLateness(allowedLateness);
+    }
+
+    /**
+     * Pushes an item into the stream, closing the windows that the item's timestamp moves the watermark past.
+     * @param item the item
+     */
+    @Override
+    public void accept(T item) {
+        _windows.add(item);
+    }
+
+    /**
+     * Advances the watermark to the parameter time, closing the windows it has passed, for example when a source
+     * signals that no items before the time will arrive or when the feed goes quiet.
+     * @param time the new watermark
+     */
+    public void advanceWatermark(long time) {
+        _windows.advanceWatermark(time);
+    }
+
+    /**
+     * Returns the watermark of the stream.
+     * @return the watermark, or Long.MIN_VALUE if no item has been pushed
+     */
+    public long getWatermark() {
+        return _windows.getWatermark();
+    }
+
+    private void closed(TimeWindow<T> window) {
+        for(int i = 0; i < _listeners.size(); i++) {
+            _listeners.get(i).accept(window);
+        }
+    }
+}
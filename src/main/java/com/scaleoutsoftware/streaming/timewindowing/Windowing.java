@@ -15,8 +15,12 @@
 */
 package com.scaleoutsoftware.streaming.timewindowing;
 
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 /**
  * Static functions that transform a List into an iterable collection of TimeWindows.
@@ -37,7 +41,7 @@ public class Windowing {
         if(source.size() <= 0) {
             throw new NullPointerException("Underlying source collection has no items.");
         }
-        return new SessionWindowIterable<T>(source, selector, start, end, timeout);
+        return sessionWindows(new SelectorEventStore<>(source, selector), start, end, timeout);
     }
 
     /**
@@ -54,6 +58,23 @@ public class Windowing {
         return toSlidingWindows(source, selector, start, end, duration, duration);
     }
 
+    /**
+     * Transforms a List into an iterable collection of tumbling TimeWindows, optionally skipping the windows that hold
+     * no items.
+     * @param source the source collection
+     * @param selector the selector used to pull timestamps from objects
+     * @param start the start time to use when scanning the collection
+     * @param end the end time to use when scanning the collection
+     * @param duration the length of time in each time window
+     * @param skipEmpty whether to skip windows without items, jumping from each window to the next one that holds the
+     *                  next item
+     * @param <T> the type of objects in the source collection
+     * @return an iterable collection of tumbling windows
+     */
+    public static <T> Iterable<TimeWindow<T>> toTumblingWindows(List<T> source, TimestampSelector<T> selector, long start, long end, long duration, boolean skipEmpty) {
+        return toSlidingWindows(source, selector, start, end, duration, duration, skipEmpty);
+    }
+
     /**
      * Transforms a List into an iterable collection of sliding TimeWindows
      * @param source the source collection
@@ -70,29 +91,119 @@ public class Windowing {
             throw new NullPointerException("Underlying source collection has no items.");
         }
 
-        return new SlidingWindowIterable<>(source, selector, start, end, duration, every);
+        return slidingWindows(new SelectorEventStore<>(source, selector), start, end, duration, every);
     }
 
+    /**
+     * Transforms a List into an iterable collection of sliding TimeWindows, optionally skipping the windows that hold
+     * no items. When empty windows are skipped, iteration costs O(occupied windows) rather than O(elapsed time), which
+     * matters for sparse or bursty data and for start times far before the first item.
+     * @param source the source collection
+     * @param selector the selector used to pull timestamp from objects
+     * @param start the start time to use when scanning the collection
+     * @param end the end time to use when scanning the collection
+     * @param duration the length of time in each time window
+     * @param every the time between the starting point of each time window
+     * @param skipEmpty whether to skip windows without items, jumping from each window to the next one that holds the
+     *                  next item
+     * @param <T> the type of objects in the source collection
+     * @return an iterable collection of sliding windows
+     */
+    public static <T> Iterable<TimeWindow<T>> toSlidingWindows(List<T> source, TimestampSelector<T> selector, long start, long end, long duration, long every, boolean skipEmpty) {
+        if(source.size() <= 0) {
+            throw new NullPointerException("Underlying source collection has no items.");
+        }
+
+        return slidingWindows(new SelectorEventStore<>(source, selector), start, end, duration, every, false, skipEmpty);
+    }
+
+    /**
+     * Transforms a time-ordered store into an iterable collection of session TimeWindows.
+     * @param source the time-ordered store
+     * @param start the start time to use when scanning the store
+     * @param end the end time to use when scanning the store
+     * @param timeout the minimum amount of time between session window ranges
+     * @param <T> the type of objects in the store
+     * @return an iterable collection of session windows
+     */
+    static <T> Iterable<TimeWindow<T>> sessionWindows(EventStore<T> source, long start, long end, long timeout) {
+        return sessionWindows(source, start, end, timeout, false);
+    }
+
+    /**
+     * Transforms a time-ordered store into an iterable collection of session TimeWindows, optionally reusing one
+     * window object for every window of an iterator.
+     * @param source the time-ordered store
+     * @param start the start time to use when scanning the store
+     * @param end the end time to use when scanning the store
+     * @param timeout the minimum amount of time between session window ranges
+     * @param reuse whether each iterator and spliterator moves one flyweight window instead of creating a window per
+     *              step; a flyweight window is only valid until the next window is produced
+     * @param <T> the type of objects in the store
+     * @return an iterable collection of session windows
+     */
+    static <T> Iterable<TimeWindow<T>> sessionWindows(EventStore<T> source, long start, long end, long timeout, boolean reuse) {
+        return new SessionWindowIterable<T>(source, start, end, timeout, reuse);
+    }
+
+    /**
+     * Transforms a time-ordered store into an iterable collection of sliding TimeWindows.
+     * @param source the time-ordered store
+     * @param start the start time to use when scanning the store
+     * @param end the end time to use when scanning the store
+     * @param duration the length of time in each time window
+     * @param every the time between the starting point of each time window
+     * @param <T> the type of objects in the store
+     * @return an iterable collection of sliding windows
+     */
+    static <T> Iterable<TimeWindow<T>> slidingWindows(EventStore<T> source, long start, long end, long duration, long every) {
+        return slidingWindows(source, start, end, duration, every, false, false);
+    }
+
+    /**
+     * Transforms a time-ordered store into an iterable collection of sliding TimeWindows, optionally reusing one window
+     * object for every window of an iterator.
+     * @param source the time-ordered store
+     * @param start the start time to use when scanning the store
+     * @param end the end time to use when scanning the store
+     * @param duration the length of time in each time window
+     * @param every the time between the starting point of each time window
+     * @param reuse whether each iterator and spliterator moves one flyweight window instead of creating a window per
+     *              step; a flyweight window is only valid until the next window is produced
+     * @param skipEmpty whether to skip windows without items
+     * @param <T> the type of objects in the store
+     * @return an iterable collection of sliding windows
+     */
+    static <T> Iterable<TimeWindow<T>> slidingWindows(EventStore<T> source, long start, long end, long duration, long every, boolean reuse, boolean skipEmpty) {
+        return new SlidingWindowIterable<>(source, start, end, duration, every, reuse, skipEmpty);
+    }
+
+    /**
+     * An iterable collection of session windows. The iterable holds no iteration state; each iterator and
+     * spliterator scans the store independently. When windows are reused, each iterator and spliterator moves a single
+     * flyweight window from session to session.
+     */
     static class SessionWindowIterable<T> implements Iterable<TimeWindow<T>> {
-        List<T> _source;
-        TimestampSelector<T> _selector;
-        long _startTime;
-        long _endTime;
-        long _timeout;
-        int _index;
+        final EventStore<T> _source;
+        final long _startTime;
+        final long _endTime;
+        final long _timeout;
+        final boolean _reuse;
 
-        public SessionWindowIterable(List<T> source, TimestampSelector<T> selector, long start, long end, long timeout) {
+        public SessionWindowIterable(EventStore<T> source, long start, long end, long timeout, boolean reuse) {
             _source     = source;
-            _selector   = selector;
             _startTime  = start;
             _endTime    = end;
             _timeout    = timeout;
-            _index      = 0;
+            _reuse      = reuse;
         }
 
         @Override
         public Iterator<TimeWindow<T>> iterator() {
             return new Iterator<TimeWindow<T>>() {
+                int _index = 0;
+                SessionTimeWindow<T> _window;
+
                 @Override
                 public boolean hasNext() {
                     return _index < _source.size();
@@ -100,54 +211,275 @@ public class Windowing {
 
                 @Override
                 public TimeWindow<T> next() {
-                    SessionTimeWindow<T> window = new SessionTimeWindow<T>(_timeout);
-                    _index = window.setItems(_source, _index, _selector);
+                    if(!hasNext())
+                        throw new NoSuchElementException();
+                    SessionTimeWindow<T> window = sessionWindow(_timeout, _reuse, _window);
+                    _index = window.setItems(_source, _index);
+                    _window = window;
                     return window;
                 }
             };
         }
+
+        /**
+         * Returns a sized spliterator over the session windows. Session boundaries depend on every item before
+         * them, so they are found up front in one pass; the windows are then split by index range.
+         */
+        @Override
+        public Spliterator<TimeWindow<T>> spliterator() {
+            int size = _source.size();
+            int[] bounds = new int[Math.min(size, 16) + 1];
+            int count = 0;
+            for(int index = 1; index <= size; index++) {
+                if(index == size || _source.getTimestamp(index) - _source.getTimestamp(index - 1) > _timeout) {
+                    if(++count == bounds.length)
+                        bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                    bounds[count] = index;
+                }
+            }
+            return new SessionWindowSpliterator<>(_source, _timeout, bounds, 0, count, _reuse);
+        }
+    }
+
+    /**
+     * Returns the parameter window if it can be reused, otherwise a new session window.
+     */
+    static <T> SessionTimeWindow<T> sessionWindow(long timeout, boolean reuse, SessionTimeWindow<T> previous) {
+        if(reuse && previous != null)
+            return previous;
+        SessionTimeWindow<T> window = new SessionTimeWindow<T>(timeout);
+        window._reusable = reuse;
+        return window;
     }
 
+    static class SessionWindowSpliterator<T> implements Spliterator<TimeWindow<T>> {
+        final EventStore<T> _source;
+        final long _timeout;
+        // bounds[i] is the index of the first item of the i-th session window
+        final int[] _bounds;
+        int _window;
+        final int _fence;
+        final boolean _reuse;
+        SessionTimeWindow<T> _flyweight;
 
+        SessionWindowSpliterator(EventStore<T> source, long timeout, int[] bounds, int window, int fence, boolean reuse) {
+            _source     = source;
+            _timeout    = timeout;
+            _bounds     = bounds;
+            _window     = window;
+            _fence      = fence;
+            _reuse      = reuse;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super TimeWindow<T>> action) {
+            if(_window >= _fence)
+                return false;
+            SessionTimeWindow<T> window = sessionWindow(_timeout, _reuse, _flyweight);
+            window.setItems(_source, _bounds[_window], _bounds[_window + 1]);
+            _window++;
+            _flyweight = window;
+            action.accept(window);
+            return true;
+        }
+
+        @Override
+        public Spliterator<TimeWindow<T>> trySplit() {
+            int mid = (_window + _fence) >>> 1;
+            // a store that reads through a shared cursor is traversed by a single thread
+            if(mid <= _window || Utils.isThreadConfined(_source))
+                return null;
+            Spliterator<TimeWindow<T>> prefix = new SessionWindowSpliterator<>(_source, _timeout, _bounds, _window, mid, _reuse);
+            _window = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return _fence - _window;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
+    }
+
+    /**
+     * An iterable collection of sliding windows. The start time of the i-th window is start + i * every, so windows
+     * can be produced independently of each other; the iterable holds no iteration state. When windows are reused,
+     * each iterator and spliterator moves a single flyweight window from position to position. When empty windows are
+     * skipped, each window is followed by the first later window that holds an item, found from the timestamp of the
+     * next item rather than by stepping through the windows in between.
+     */
     static class SlidingWindowIterable<T> implements Iterable<TimeWindow<T>> {
-        final List<T> _source;
-        final TimestampSelector<T> _selector;
-        long _start;
+        final EventStore<T> _source;
+        final long _start;
         final long _end;
         final long _duration;
         final long _every;
-        int index;
+        final boolean _reuse;
+        final boolean _skipEmpty;
 
-        public SlidingWindowIterable(List<T> source, TimestampSelector<T> selector, long start, long end, long duration, long every) {
+        public SlidingWindowIterable(EventStore<T> source, long start, long end, long duration, long every, boolean reuse, boolean skipEmpty) {
             _source     = source;
-            _selector   = selector;
             _start      = start;
             _end        = end;
             _duration   = duration;
             _every      = every;
-            index       = 0;
+            _reuse      = reuse;
+            _skipEmpty  = skipEmpty;
+        }
+
+        /**
+         * Returns the number of windows between the start and end times, saturating at Long.MAX_VALUE. The span is
+         * taken as unsigned, so a start time far in the past, such as Long.MIN_VALUE, cannot overflow it.
+         */
+        long windowCount() {
+            if(_start >= _end)
+                return 0;
+            long last = Long.divideUnsigned(_end - _start - 1, _every);
+            return last < 0 || last == Long.MAX_VALUE ? Long.MAX_VALUE : last + 1;
+        }
+
+        /**
+         * Returns the position of the first window that ends after the parameter time, which must not be before the
+         * start time. The offset from the start time is taken as unsigned, like the span in windowCount().
+         */
+        long firstWindowEndingAfter(long time) {
+            long offset = time - _start;
+            if(Long.compareUnsigned(offset, _duration) < 0)
+                return 0;
+            long position = Long.divideUnsigned(offset - _duration, _every);
+            return position < 0 || position == Long.MAX_VALUE ? Long.MAX_VALUE : position + 1;
+        }
+
+        /**
+         * Returns the position of the first window at or after the parameter position that holds an item. Each step
+         * finds the next item at or after a window's start and jumps to the first window that ends after it, so the
+         * cost depends on the number of occupied windows rather than the number of windows.
+         * @param position the position to start from
+         * @param hint an index at or before the first item of the window at the position
+         * @return the position of the next occupied window, or the window count if there is none
+         */
+        long occupiedPosition(long position, int hint) {
+            long count = windowCount();
+            int size = _source.size();
+            int index = hint;
+            while(position < count) {
+                long start = _start + position * _every;
+                index = _source.lowerBound(index, start);
+                if(index == size)
+                    return count;
+                long timestamp = _source.getTimestamp(index);
+                if(timestamp < Math.min(start + _duration, _end))
+                    return position;
+                // the first window that ends after the item; windows shorter than their step may still miss it
+                position = Math.max(position + 1, firstWindowEndingAfter(timestamp));
+            }
+            return count;
+        }
+
+        /**
+         * Creates the window at the parameter position, or moves the previous window there when windows are reused.
+         * Its range of items is resolved when it is first needed, by searching the store from the hint of the previous
+         * window, if any.
+         */
+        SlidingTimeWindow<T> window(long position, SlidingTimeWindow<T> previous, int hint) {
+            long start = _start + position * _every;
+            long end = Math.min(start + _duration, _end);
+            if(previous != null)
+                hint = Math.max(hint, previous.searchHint());
+            SlidingTimeWindow<T> window = previous;
+            if(!_reuse || window == null) {
+                window = new SlidingTimeWindow<T>(start, end);
+                window._reusable = _reuse;
+            }
+            window.setBounds(_source, start, end, hint);
+            return window;
         }
 
         @Override
         public Iterator<TimeWindow<T>> iterator() {
             return new Iterator<TimeWindow<T>>() {
+                final long _count = windowCount();
+                long _position = _skipEmpty ? occupiedPosition(0, 0) : 0;
+                SlidingTimeWindow<T> _previous;
+
                 @Override
                 public boolean hasNext() {
-                    return _start < _end;
+                    return _position < _count;
                 }
 
                 @Override
                 public SlidingTimeWindow<T> next() {
-                    long dur = _duration;
-                    if((_start + dur) > _end) {
-                        dur = _end - _start;
-                    }
-                    SlidingTimeWindow<T> window = new SlidingTimeWindow<T>(_start, _start + dur);
-                    index = window.setItems(_source, index, _selector);
-                    _start = _start + _every;
-                    return window;
+                    if(!hasNext())
+                        throw new NoSuchElementException();
+                    _previous = window(_position, _previous, 0);
+                    _position = _skipEmpty ? occupiedPosition(_position + 1, _previous.searchHint()) : _position + 1;
+                    return _previous;
                 }
             };
         }
+
+        @Override
+        public Spliterator<TimeWindow<T>> spliterator() {
+            return new SlidingWindowSpliterator<>(this, 0, windowCount());
+        }
+    }
+
+    static class SlidingWindowSpliterator<T> implements Spliterator<TimeWindow<T>> {
+        final SlidingWindowIterable<T> _windows;
+        long _position;
+        final long _fence;
+        SlidingTimeWindow<T> _previous;
+        int _index;
+
+        SlidingWindowSpliterator(SlidingWindowIterable<T> windows, long position, long fence) {
+            _windows    = windows;
+            _position   = position;
+            _fence      = fence;
+            _index      = 0;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super TimeWindow<T>> action) {
+            if(_windows._skipEmpty && _position < _fence)
+                _position = _windows.occupiedPosition(_position, _previous == null ? _index : _previous.searchHint());
+            if(_position >= _fence) {
+                _position = _fence;
+                return false;
+            }
+            _previous = _windows.window(_position++, _previous, _index);
+            action.accept(_previous);
+            return true;
+        }
+
+        @Override
+        public Spliterator<TimeWindow<T>> trySplit() {
+            long mid = (_position + _fence) >>> 1;
+            // a store that reads through a shared cursor is traversed by a single thread
+            if(mid <= _position || Utils.isThreadConfined(_windows._source))
+                return null;
+            // the prefix keeps the search hint; the suffix finds its first window by galloping from the hint
+            SlidingWindowSpliterator<T> prefix = new SlidingWindowSpliterator<>(_windows, _position, mid);
+            prefix._index = _previous == null ? _index : _previous.searchHint();
+            _position = mid;
+            return prefix;
+        }
+
+        /**
+         * Returns the number of remaining windows, or an upper bound on it when empty windows are skipped.
+         */
+        @Override
+        public long estimateSize() {
+            return _fence - _position;
+        }
+
+        @Override
+        public int characteristics() {
+            // the number of occupied windows is not known without finding them
+            return _windows._skipEmpty ? ORDERED | NONNULL : ORDERED | SIZED | SUBSIZED | NONNULL;
+        }
     }
 }
@@ -16,8 +16,10 @@
 package com.scaleoutsoftware.streaming.timewindowing.samples;
 
 
+import com.scaleoutsoftware.streaming.timewindowing.Aggregators;
 import com.scaleoutsoftware.streaming.timewindowing.SlidingWindowCollection;
 import com.scaleoutsoftware.streaming.timewindowing.TimeWindow;
+import com.scaleoutsoftware.streaming.timewindowing.WindowAggregate;
 
 import java.sql.Timestamp;
 import java.time.Instant;
@@ -77,6 +79,15 @@ public class Sample {
 
         System.out.println("Sliding average: " + slidingAverage/windowCount);
 
+        // the same per-window averages from an aggregation; it is built from the heart rates already in the
+        // collection when registered, and heart rates added through swc.add() afterwards would update it in place
+        // instead of every window being re-iterated
+        for(WindowAggregate<Double> average : swc.addAggregation(Aggregators.average(HeartRate::getHeartRate))) {
+            System.out.println(String.format("Window %s average: %.1f",
+                    Timestamp.from(Instant.ofEpochMilli(average.getStartTime())).toString(),
+                    average.getResult()));
+        }
+
     }
 
     public static void printWindowInfo(int count, TimeWindow<HeartRate> window) {
@@ -0,0 +1,445 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing.tests;
+
+import com.scaleoutsoftware.streaming.timewindowing.Aggregators;
+import com.scaleoutsoftware.streaming.timewindowing.CountSlidingWindowCollection;
+import com.scaleoutsoftware.streaming.timewindowing.CountTumblingWindowCollection;
+import com.scaleoutsoftware.streaming.timewindowing.LongDoubleSlidingWindowCollection;
+import com.scaleoutsoftware.streaming.timewindowing.LongDoubleTimeWindow;
+import com.scaleoutsoftware.streaming.timewindowing.LongDoubleTumblingWindowCollection;
+import com.scaleoutsoftware.streaming.timewindowing.RingBufferEventStore;
+import com.scaleoutsoftware.streaming.timewindowing.SlidingWindowCollection;
+import com.scaleoutsoftware.streaming.timewindowing.TimeWindow;
+import com.scaleoutsoftware.streaming.timewindowing.TumblingWindowCollection;
+import com.scaleoutsoftware.streaming.timewindowing.WindowAggregate;
+import com.scaleoutsoftware.streaming.timewindowing.WindowAggregator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+public class AggregationTests {
+
+    @Test
+    public void testSlidingAggregationMatchesWindows() {
+        Random random = new Random(42);
+        ArrayList<TestObject> source = new ArrayList<>();
+        SlidingWindowCollection<TestObject> swc = new SlidingWindowCollection<>(source,
+                testObject -> testObject.getTimestamp(),
+                120,
+                30,
+                1000);
+
+        // register before and after adding items; both must see every item
+        Iterable<WindowAggregate<Long>> counts = swc.addAggregation(Aggregators.count());
+        for(int i = 0; i < 500; i++) {
+            // up to 50 units out of order, some before the start time
+            swc.add(new TestObject(950 + i * 10 + random.nextInt(50)));
+        }
+        Iterable<WindowAggregate<Double>> sums = swc.addAggregation(Aggregators.sum(testObject -> testObject.getTimestamp()));
+        for(int i = 500; i < 600; i++) {
+            swc.add(new TestObject(950 + i * 10 + random.nextInt(50)));
+        }
+
+        Iterator<WindowAggregate<Long>> countIt = counts.iterator();
+        Iterator<WindowAggregate<Double>> sumIt = sums.iterator();
+        for(TimeWindow<TestObject> window : swc) {
+            WindowAggregate<Long> count = countIt.next();
+            WindowAggregate<Double> sum = sumIt.next();
+            Assert.assertEquals(window.getStartTime(), count.getStartTime());
+            Assert.assertEquals(window.getEndTime(), count.getEndTime());
+            Assert.assertEquals(window.getStartTime(), sum.getStartTime());
+
+            long expectedSum = 0;
+            for(TestObject t : window) {
+                expectedSum += t.getTimestamp();
+            }
+            Assert.assertEquals((long)window.size(), (long)count.getResult());
+            Assert.assertEquals(expectedSum, sum.getResult(), 0);
+        }
+        Assert.assertFalse(countIt.hasNext());
+        Assert.assertFalse(sumIt.hasNext());
+    }
+
+    @Test
+    public void testTumblingAggregation() {
+        ArrayList<TestObject> source = new ArrayList<>();
+        for(long ts = 0; ts < 100; ts++) {
+            source.add(new TestObject(ts));
+        }
+        TumblingWindowCollection<TestObject> twc = new TumblingWindowCollection<>(source,
+                testObject -> testObject.getTimestamp(),
+                10,
+                0);
+        Iterable<WindowAggregate<Double>> max = twc.addAggregation(Aggregators.max(testObject -> testObject.getTimestamp()));
+        Iterable<WindowAggregate<Double>> avg = twc.addAggregation(Aggregators.average(testObject -> testObject.getTimestamp()));
+
+        int windows = 0;
+        Iterator<WindowAggregate<Double>> avgIt = avg.iterator();
+        for(WindowAggregate<Double> window : max) {
+            Assert.assertEquals(window.getStartTime() + 9, window.getResult(), 0);
+            Assert.assertEquals(window.getStartTime() + 4.5, avgIt.next().getResult(), 0);
+            windows++;
+        }
+        Assert.assertEquals(10, windows);
+    }
+
+    @Test
+    public void testPanesAccumulateEachItemOnce() {
+        int[] accumulations = new int[1];
+        // a list of timestamps, so that window results can be compared exactly
+        WindowAggregator<TestObject, ArrayList<Long>, ArrayList<Long>> collect = new WindowAggregator<TestObject, ArrayList<Long>, ArrayList<Long>>() {
+            @Override
+            public ArrayList<Long> createAccumulator() {
+                return new ArrayList<>();
+            }
+
+            @Override
+            public ArrayList<Long> accumulate(ArrayList<Long> accumulator, TestObject item) {
+                accumulations[0]++;
+                accumulator.add(item.getTimestamp());
+                return accumulator;
+            }
+
+            @Override
+            public ArrayList<Long> combine(ArrayList<Long> left, ArrayList<Long> right) {
+                left.addAll(right);
+                return left;
+            }
+
+            @Override
+            public ArrayList<Long> getResult(ArrayList<Long> accumulator) {
+                accumulator.sort(null);
+                return accumulator;
+            }
+        };
+
+        // duration is not a multiple of every: panes are gcd(100, 40) = 20 units long
+        ArrayList<TestObject> source = new ArrayList<>();
+        SlidingWindowCollection<TestObject> swc = new SlidingWindowCollection<>(source,
+                testObject -> testObject.getTimestamp(),
+                100,
+                40,
+                0);
+        Iterable<WindowAggregate<ArrayList<Long>>> results = swc.addAggregation(collect);
+        for(long ts = 0; ts < 1000; ts += 7) {
+            swc.add(new TestObject(ts));
+        }
+        Assert.assertEquals(source.size(), accumulations[0]);
+
+        Iterator<WindowAggregate<ArrayList<Long>>> it = results.iterator();
+        for(TimeWindow<TestObject> window : swc) {
+            WindowAggregate<ArrayList<Long>> result = it.next();
+            Assert.assertEquals(window.getEndTime(), result.getEndTime());
+            ArrayList<Long> expected = new ArrayList<>();
+            window.forEach(testObject -> expected.add(testObject.getTimestamp()));
+            Assert.assertEquals(expected, result.getResult());
+        }
+        Assert.assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testSparsePanes() {
+        // panes are gcd(1000003, 1000000) = 1 unit long, so the feed spans about 1e9 panes of which only 200 hold items
+        ArrayList<TestObject> source = new ArrayList<>();
+        SlidingWindowCollection<TestObject> swc = new SlidingWindowCollection<>(source,
+                testObject -> testObject.getTimestamp(),
+                1000003,
+                1000000,
+                0);
+        Iterable<WindowAggregate<Long>> counts = swc.addAggregation(Aggregators.count());
+        for(long ts = 0; ts < 1000000000L; ts += 5000000L) {
+            swc.add(new TestObject(ts));
+            swc.add(new TestObject(ts + 1000001));
+        }
+
+        Iterator<WindowAggregate<Long>> it = counts.iterator();
+        long total = 0;
+        for(TimeWindow<TestObject> window : swc) {
+            WindowAggregate<Long> count = it.next();
+            Assert.assertEquals(window.getStartTime(), count.getStartTime());
+            Assert.assertEquals((long)window.size(), (long)count.getResult());
+            total += count.getResult();
+        }
+        Assert.assertFalse(it.hasNext());
+        Assert.assertTrue(total >= source.size());
+    }
+
+    @Test
+    public void testStartFarInThePast() {
+        // the small grid spans far too many windows to read back, but adding must not fail
+        SlidingWindowCollection<TestObject> swc = new SlidingWindowCollection<>(new ArrayList<>(),
+                testObject -> testObject.getTimestamp(),
+                10,
+                5,
+                Long.MIN_VALUE);
+        swc.addAggregation(Aggregators.count());
+        for(long ts = 0; ts < 1000; ts++)
+            swc.add(new TestObject(ts));
+
+        // windows of 2^62 starting at Long.MIN_VALUE reach the items in three steps
+        swc = new SlidingWindowCollection<>(new ArrayList<>(),
+                testObject -> testObject.getTimestamp(),
+                1L << 62,
+                1L << 62,
+                Long.MIN_VALUE);
+        Iterable<WindowAggregate<Long>> counts = swc.addAggregation(Aggregators.count());
+        swc.add(new TestObject(Long.MIN_VALUE));
+        for(long ts = 0; ts < 1000; ts++)
+            swc.add(new TestObject(ts));
+
+        Iterator<WindowAggregate<Long>> it = counts.iterator();
+        int windows = 0;
+        for(TimeWindow<TestObject> window : swc) {
+            WindowAggregate<Long> count = it.next();
+            Assert.assertEquals(window.getStartTime(), count.getStartTime());
+            Assert.assertEquals((long)window.size(), (long)count.getResult());
+            windows++;
+        }
+        Assert.assertFalse(it.hasNext());
+        Assert.assertEquals(3, windows);
+    }
+
+    @Test
+    public void testRollingMax() {
+        Random random = new Random(7);
+        ArrayList<TestObject> source = new ArrayList<>();
+        SlidingWindowCollection<TestObject> swc = new SlidingWindowCollection<>(source,
+                testObject -> testObject.getTimestamp(),
+                100,
+                50,
+                0);
+        long range = 300;
+        WindowAggregate<Double> rollingMax = swc.addRollingAggregation(
+                Aggregators.max(testObject -> (double)(testObject.getTimestamp() % 97)), range);
+        WindowAggregate<Long> rollingCount = swc.addRollingAggregation(Aggregators.count(), range);
+
+        for(int i = 0; i < 2000; i++) {
+            // mostly in order, occasionally late by up to 40 units (back stack) or 250 units (front stack)
+            long ts = i * 5 - (random.nextInt(10) != 0 ? 0 : random.nextInt(random.nextBoolean() ? 40 : 250));
+            swc.add(new TestObject(Math.max(0, ts)));
+
+            long newest = source.get(source.size() - 1).getTimestamp();
+            double expected = Double.NEGATIVE_INFINITY;
+            long count = 0;
+            for(TestObject t : source) {
+                if(t.getTimestamp() > newest - range) {
+                    expected = Math.max(expected, t.getTimestamp() % 97);
+                    count++;
+                }
+            }
+            Assert.assertEquals(newest + 1, rollingMax.getEndTime());
+            Assert.assertEquals(newest + 1 - range, rollingMax.getStartTime());
+            Assert.assertEquals(expected, rollingMax.getResult(), 0);
+            Assert.assertEquals(count, (long)rollingCount.getResult());
+        }
+    }
+
+    @Test
+    public void testPrimitiveWindowsMatchObjectWindows() {
+        Random random = new Random(21);
+        SlidingWindowCollection<TestObject> swc = new SlidingWindowCollection<>(new ArrayList<>(),
+                testObject -> testObject.getTimestamp(), 120, 30, 1000);
+        LongDoubleSlidingWindowCollection primitive = new LongDoubleSlidingWindowCollection(120, 30, 1000);
+        for(int i = 0; i < 3000; i++) {
+            // up to 50 units out of order, some before the start time
+            long timestamp = 950 + i * 10 + random.nextInt(50);
+            swc.add(new TestObject(timestamp));
+            primitive.add(timestamp, Math.sin(timestamp));
+        }
+
+        Iterator<LongDoubleTimeWindow> it = primitive.iterator();
+        for(TimeWindow<TestObject> window : swc) {
+            LongDoubleTimeWindow other = it.next();
+            Assert.assertEquals(window.getStartTime(), other.getStartTime());
+            Assert.assertEquals(window.getEndTime(), other.getEndTime());
+            Assert.assertEquals(window.size(), other.size());
+
+            double sum = 0, min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            int i = 0;
+            for(TestObject testObject : window) {
+                double value = Math.sin(testObject.getTimestamp());
+                Assert.assertEquals(testObject.getTimestamp(), other.getTimestamp(i));
+                Assert.assertEquals(value, other.getValue(i++), 0);
+                sum += value;
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            Assert.assertEquals(sum, other.sum(), 1e-9);
+            Assert.assertEquals(sum, other.values().sum(), 1e-9);
+            Assert.assertEquals(min, other.min(), 0);
+            Assert.assertEquals(max, other.max(), 0);
+            if(window.size() > 0)
+                Assert.assertEquals(sum / window.size(), other.average(), 1e-9);
+        }
+        Assert.assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testPrimitiveTumblingWindows() {
+        LongDoubleTumblingWindowCollection twc = new LongDoubleTumblingWindowCollection(10, 0);
+        for(int i = 99; i >= 0; i--)
+            twc.add(i, i);
+        Assert.assertEquals(100, twc.size());
+
+        int windows = 0;
+        for(LongDoubleTimeWindow window : twc) {
+            Assert.assertEquals(windows * 10, window.getStartTime());
+            Assert.assertEquals(10, window.size());
+            Assert.assertEquals(windows * 100 + 45, window.sum(), 0);
+            double[] expected = new double[10];
+            for(int i = 0; i < 10; i++)
+                expected[i] = windows * 10 + i;
+            Assert.assertArrayEquals(expected, window.toArray(), 0);
+            long[] previous = { -1 };
+            window.forEach((timestamp, value) -> {
+                Assert.assertTrue(timestamp > previous[0]);
+                Assert.assertEquals(timestamp, value, 0);
+                previous[0] = timestamp;
+            });
+            windows++;
+        }
+        Assert.assertEquals(10, windows);
+    }
+
+    @Test
+    public void testPrimitiveAdvanceStartTime() {
+        LongDoubleSlidingWindowCollection swc = new LongDoubleSlidingWindowCollection(100, 40, 0);
+        for(int i = 0; i < 1000; i++)
+            swc.add(i, i);
+
+        // aligned down to the window grid: windows start at 480 and the events before it are evicted
+        swc.advanceStartTime(500);
+        Assert.assertEquals(520, swc.size());
+        Assert.assertEquals(480, swc.iterator().next().getStartTime());
+        swc.advanceStartTime(100);
+        Assert.assertEquals(520, swc.size());
+        swc.advanceStartTime(5000);
+        Assert.assertEquals(0, swc.size());
+        Assert.assertFalse(swc.iterator().hasNext());
+    }
+
+    @Test
+    public void testPrimitiveParallelWindows() {
+        Random random = new Random(5);
+        LongDoubleSlidingWindowCollection swc = new LongDoubleSlidingWindowCollection(120, 30, 1000);
+        for(int i = 0; i < 20000; i++) {
+            long timestamp = 950 + i * 10 + random.nextInt(50);
+            swc.add(timestamp, timestamp % 13);
+        }
+
+        List<String> sequential = new ArrayList<>();
+        for(LongDoubleTimeWindow window : swc)
+            sequential.add(window.getStartTime() + ":" + window.size() + ":" + window.sum());
+        Spliterator<LongDoubleTimeWindow> spliterator = swc.spliterator();
+        Assert.assertTrue(spliterator.hasCharacteristics(Spliterator.SUBSIZED));
+        Assert.assertEquals(sequential.size(), spliterator.getExactSizeIfKnown());
+        List<String> parallel = StreamSupport.stream(swc.spliterator(), true)
+                .map(window -> window.getStartTime() + ":" + window.size() + ":" + window.sum())
+                .collect(Collectors.toList());
+        Assert.assertEquals(sequential, parallel);
+    }
+
+    @Test
+    public void testCountWindows() {
+        Random random = new Random(17);
+        ArrayList<Long> added = new ArrayList<>();
+        CountSlidingWindowCollection<TestObject> cwc = new CountSlidingWindowCollection<>(new RingBufferEventStore<>(),
+                testObject -> testObject.getTimestamp(), 20, 6, 500);
+        Iterable<WindowAggregate<Double>> maxes = cwc.addAggregation(Aggregators.max(testObject -> testObject.getTimestamp()));
+        for(int i = 0; i < 3000; i++) {
+            // mostly in order, sometimes up to 30 units late
+            long timestamp = i * 3 + (random.nextInt(10) == 0 ? -random.nextInt(30) : 0);
+            cwc.add(new TestObject(timestamp));
+            added.add(timestamp);
+            if(i == 100) {
+                // registered after items were added
+                Iterable<WindowAggregate<Long>> counts = cwc.addAggregation(Aggregators.count());
+                for(WindowAggregate<Long> count : counts)
+                    Assert.assertEquals(20, (long)count.getResult());
+            }
+        }
+        Assert.assertEquals(500, cwc.size());
+
+        // windows are counted from the first item ever added; only the fully retained, complete ones are iterated
+        Collections.sort(added);
+        List<Long> retained = added.subList(added.size() - 500, added.size());
+        int first = (2500 + 5) / 6 * 6 - 2500;
+        Iterator<WindowAggregate<Double>> maxIt = maxes.iterator();
+        int windows = 0;
+        for(TimeWindow<TestObject> window : cwc) {
+            int from = first + windows * 6;
+            Assert.assertEquals(20, window.size());
+            Assert.assertEquals((long)retained.get(from), window.getStartTime());
+            Assert.assertEquals(retained.get(from + 19) + 1, window.getEndTime());
+            int i = from;
+            for(TestObject item : window)
+                Assert.assertEquals((long)retained.get(i++), item.getTimestamp());
+
+            WindowAggregate<Double> max = maxIt.next();
+            Assert.assertEquals(window.getStartTime(), max.getStartTime());
+            Assert.assertEquals(window.getEndTime(), max.getEndTime());
+            Assert.assertEquals((double)retained.get(from + 19), max.getResult(), 0);
+            windows++;
+        }
+        Assert.assertFalse(maxIt.hasNext());
+        Assert.assertEquals((500 - first - 20) / 6 + 1, windows);
+    }
+
+    @Test
+    public void testCountWindowsRejectInvalidRetention() {
+        for(int maxItems : new int[] { 0, -1, 19 }) {
+            try {
+                new CountSlidingWindowCollection<TestObject>(new RingBufferEventStore<>(),
+                        testObject -> testObject.getTimestamp(), 20, 6, maxItems);
+                Assert.fail("maxItems " + maxItems + " accepted");
+            } catch(IllegalArgumentException e) {
+                // expected
+            }
+        }
+        new CountSlidingWindowCollection<TestObject>(new RingBufferEventStore<>(),
+                testObject -> testObject.getTimestamp(), 20, 6, 20);
+    }
+
+    @Test
+    public void testCountTumblingWindows() {
+        CountTumblingWindowCollection<TestObject> cwc = new CountTumblingWindowCollection<>(new ArrayList<>(),
+                testObject -> testObject.getTimestamp(), 20);
+        Iterable<WindowAggregate<Double>> averages = cwc.addAggregation(Aggregators.average(testObject -> testObject.getTimestamp()));
+        for(int i = 0; i < 105; i++)
+            cwc.add(new TestObject(i));
+
+        int windows = 0;
+        Iterator<WindowAggregate<Double>> averageIt = averages.iterator();
+        for(TimeWindow<TestObject> window : cwc) {
+            Assert.assertEquals(windows * 20, window.getStartTime());
+            Assert.assertEquals(windows * 20 + 20, window.getEndTime());
+            Assert.assertEquals(windows * 20 + 9.5, averageIt.next().getResult(), 1e-9);
+            windows++;
+        }
+        // the last 5 items do not fill a window
+        Assert.assertEquals(5, windows);
+        Assert.assertFalse(averageIt.hasNext());
+    }
+}
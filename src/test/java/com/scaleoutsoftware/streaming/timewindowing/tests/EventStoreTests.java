@@ -0,0 +1,608 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing.tests;
+
+import com.scaleoutsoftware.streaming.timewindowing.Aggregators;
+import com.scaleoutsoftware.streaming.timewindowing.ChunkedEventStore;
+import com.scaleoutsoftware.streaming.timewindowing.EventStore;
+import com.scaleoutsoftware.streaming.timewindowing.OffHeapEventStore;
+import com.scaleoutsoftware.streaming.timewindowing.RecordCodec;
+import com.scaleoutsoftware.streaming.timewindowing.RetentionPolicies;
+import com.scaleoutsoftware.streaming.timewindowing.RingBufferEventStore;
+import com.scaleoutsoftware.streaming.timewindowing.SessionWindowCollection;
+import com.scaleoutsoftware.streaming.timewindowing.SlidingWindowCollection;
+import com.scaleoutsoftware.streaming.timewindowing.TimeWindow;
+import com.scaleoutsoftware.streaming.timewindowing.TumblingWindowCollection;
+import com.scaleoutsoftware.streaming.timewindowing.WindowAggregate;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+public class EventStoreTests {
+
+    /**
+     * Adds random, partially out-of-order timestamps to a store while evicting old items, checking the store against
+     * a sorted ArrayList after every operation.
+     */
+    static void checkStore(EventStore<TestObject> store) {
+        Random random = new Random(11);
+        ArrayList<Long> expected = new ArrayList<>();
+        for(int i = 0; i < 5000; i++) {
+            long ts = i + (random.nextInt(4) == 0 ? -random.nextInt(100) : 0);
+            int index = store.add(new TestObject(ts), ts);
+            int expectedIndex = expected.size();
+            while(expectedIndex > 0 && ts < expected.get(expectedIndex - 1))
+                expectedIndex--;
+            expected.add(expectedIndex, ts);
+            Assert.assertEquals(expectedIndex, index);
+
+            if(i % 7 == 0) {
+                // retain roughly the last 300 units of time
+                int evict = store.lowerBound(0, i - 300);
+                store.removeFirst(evict);
+                expected.subList(0, evict).clear();
+                // a count that is not positive removes nothing
+                store.removeFirst(-1);
+            }
+
+            Assert.assertEquals(expected.size(), store.size());
+            if(i % 97 == 0) {
+                for(int j = 0; j < expected.size(); j++) {
+                    Assert.assertEquals((long)expected.get(j), store.getTimestamp(j));
+                    Assert.assertEquals((long)expected.get(j), store.get(j).getTimestamp());
+                }
+                for(int from = 0; from < expected.size(); from += 13) {
+                    long time = expected.get(from) + random.nextInt(50);
+                    int bound = from;
+                    while(bound < expected.size() && expected.get(bound) < time)
+                        bound++;
+                    Assert.assertEquals(bound, store.lowerBound(from, time));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRingBufferEventStore() {
+        checkStore(new RingBufferEventStore<>());
+        checkStore(new RingBufferEventStore<>(1000));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRingBufferNegativeCapacity() {
+        new RingBufferEventStore<TestObject>(-1);
+    }
+
+    @Test
+    public void testChunkedEventStore() {
+        // small chunks, so that splits, chunk eviction and directory growth are all exercised
+        checkStore(new ChunkedEventStore<>(8));
+        checkStore(new ChunkedEventStore<>());
+    }
+
+    /**
+     * Writes a TestObject as its timestamp and a check value; 12 bytes, so that records are padded in the store.
+     */
+    static final RecordCodec<TestObject> CODEC = new RecordCodec<TestObject>() {
+        @Override
+        public int recordSize() {
+            return 12;
+        }
+
+        @Override
+        public void write(TestObject item, ByteBuffer buffer, int offset) {
+            buffer.putLong(offset, item.getTimestamp());
+            buffer.putInt(offset + 8, (int)~item.getTimestamp());
+        }
+
+        @Override
+        public TestObject read(ByteBuffer buffer, int offset) {
+            long timestamp = buffer.getLong(offset);
+            Assert.assertEquals((int)~timestamp, buffer.getInt(offset + 8));
+            return new TestObject(timestamp);
+        }
+    };
+
+    @Test
+    public void testOffHeapEventStore() throws IOException {
+        // small segments, so that records shift across segments and evicted segments are recycled
+        checkStore(new OffHeapEventStore<>(CODEC, 16));
+        checkStore(new OffHeapEventStore<>(CODEC));
+
+        File file = File.createTempFile("events", ".bin");
+        file.deleteOnExit();
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            checkStore(new OffHeapEventStore<>(CODEC, 64, channel));
+            // only the segments of the peak size are mapped
+            Assert.assertTrue(channel.size() < 5000 * 24);
+        }
+    }
+
+    @Test
+    public void testOffHeapCollectionsMatchListCollections() {
+        Random random = new Random(8);
+        SlidingWindowCollection<TestObject> listWindows = new SlidingWindowCollection<>(new ArrayList<>(),
+                testObject -> testObject.getTimestamp(), 50, 20, 100);
+        SlidingWindowCollection<TestObject> offHeapWindows = new SlidingWindowCollection<>(new OffHeapEventStore<>(CODEC, 32),
+                testObject -> testObject.getTimestamp(), 50, 20, 100);
+        SessionWindowCollection<TestObject> listSessions = new SessionWindowCollection<>(new ArrayList<>(),
+                testObject -> testObject.getTimestamp(), 100, 15);
+        SessionWindowCollection<TestObject> offHeapSessions = new SessionWindowCollection<>(new OffHeapEventStore<>(CODEC, 32),
+                testObject -> testObject.getTimestamp(), 100, 15);
+        for(int i = 0; i < 1000; i++) {
+            TestObject item = new TestObject(random.nextInt(2000));
+            listWindows.add(item);
+            offHeapWindows.add(item);
+            listSessions.add(item);
+            offHeapSessions.add(item);
+        }
+
+        assertSameWindows(listWindows, offHeapWindows);
+        assertSameWindows(listSessions, offHeapSessions);
+    }
+
+    @Test
+    public void testStoreCollectionsMatchListCollections() {
+        Random random = new Random(3);
+        List<TestObject> list = new ArrayList<>();
+        SlidingWindowCollection<TestObject> listWindows = new SlidingWindowCollection<>(list,
+                testObject -> testObject.getTimestamp(), 50, 20, 100);
+        SlidingWindowCollection<TestObject> ringWindows = new SlidingWindowCollection<>(new RingBufferEventStore<>(),
+                testObject -> testObject.getTimestamp(), 50, 20, 100);
+        SessionWindowCollection<TestObject> listSessions = new SessionWindowCollection<>(new ArrayList<>(),
+                testObject -> testObject.getTimestamp(), 100, 15);
+        SessionWindowCollection<TestObject> ringSessions = new SessionWindowCollection<>(new RingBufferEventStore<>(4),
+                testObject -> testObject.getTimestamp(), 100, 15);
+        SlidingWindowCollection<TestObject> chunkedWindows = new SlidingWindowCollection<>(new ChunkedEventStore<>(16),
+                testObject -> testObject.getTimestamp(), 50, 20, 100);
+        for(int i = 0; i < 1000; i++) {
+            TestObject item = new TestObject(random.nextInt(2000));
+            listWindows.add(item);
+            ringWindows.add(item);
+            listSessions.add(item);
+            ringSessions.add(item);
+            chunkedWindows.add(item);
+        }
+
+        assertSameWindows(listWindows, ringWindows);
+        assertSameWindows(listWindows, chunkedWindows);
+        assertSameWindows(listSessions, ringSessions);
+    }
+
+    @Test
+    public void testSourceModifiedDirectly() {
+        List<TestObject> list = new ArrayList<>();
+        SlidingWindowCollection<TestObject> listWindows = new SlidingWindowCollection<>(list,
+                testObject -> testObject.getTimestamp(), 50, 20, 100);
+        SlidingWindowCollection<TestObject> ringWindows = new SlidingWindowCollection<>(new RingBufferEventStore<>(),
+                testObject -> testObject.getTimestamp(), 50, 20, 100);
+        for(long ts = 100; ts < 1000; ts += 3) {
+            listWindows.add(new TestObject(ts));
+            ringWindows.add(new TestObject(ts));
+        }
+
+        // the cached timestamps must follow items added to and removed from the source behind the collection's back
+        for(long ts = 1000; ts < 1100; ts += 3) {
+            list.add(new TestObject(ts));
+            ringWindows.add(new TestObject(ts));
+        }
+        assertSameWindows(ringWindows, listWindows);
+
+        list.subList(0, 10).clear();
+        ringWindows = new SlidingWindowCollection<>(new RingBufferEventStore<>(),
+                testObject -> testObject.getTimestamp(), 50, 20, 100);
+        for(TestObject item : list) {
+            ringWindows.add(item);
+        }
+        assertSameWindows(ringWindows, listWindows);
+    }
+
+    static void assertSameWindows(Iterable<TimeWindow<TestObject>> expected, Iterable<TimeWindow<TestObject>> actual) {
+        Iterator<TimeWindow<TestObject>> it = actual.iterator();
+        for(TimeWindow<TestObject> window : expected) {
+            TimeWindow<TestObject> other = it.next();
+            Assert.assertEquals(window.getStartTime(), other.getStartTime());
+            Assert.assertEquals(window.getEndTime(), other.getEndTime());
+            Assert.assertEquals(window.size(), other.size());
+            Iterator<TestObject> items = other.iterator();
+            for(TestObject item : window) {
+                Assert.assertEquals(item.getTimestamp(), items.next().getTimestamp());
+            }
+            Assert.assertFalse(items.hasNext());
+        }
+        Assert.assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testAddAllMatchesAdd() {
+        Random random = new Random(5);
+        ArrayList<TestObject> expected = new ArrayList<>();
+        ArrayList<TestObject> batched = new ArrayList<>();
+        SlidingWindowCollection<TestObject> one = new SlidingWindowCollection<>(expected,
+                testObject -> testObject.getTimestamp(), 50, 20, 100);
+        List<SlidingWindowCollection<TestObject>> collections = Arrays.asList(
+                new SlidingWindowCollection<>(batched, testObject -> testObject.getTimestamp(), 50, 20, 100),
+                new SlidingWindowCollection<>(new RingBufferEventStore<>(), testObject -> testObject.getTimestamp(), 50, 20, 100),
+                new SlidingWindowCollection<>(new ChunkedEventStore<>(8), testObject -> testObject.getTimestamp(), 50, 20, 100));
+
+        for(int round = 0; round < 50; round++) {
+            // batches overlap the newest items already added, and are sometimes in order already
+            ArrayList<TestObject> batch = new ArrayList<>();
+            int size = random.nextInt(40);
+            for(int i = 0; i < size; i++) {
+                long ts = round % 5 == 0 ? round * 40 + i : round * 40 + random.nextInt(120) - 60;
+                batch.add(new TestObject(ts));
+            }
+            for(TestObject item : batch) {
+                one.add(item);
+            }
+            for(SlidingWindowCollection<TestObject> collection : collections) {
+                collection.addAll(batch);
+            }
+        }
+
+        Assert.assertEquals(expected.size(), batched.size());
+        for(int i = 0; i < expected.size(); i++) {
+            Assert.assertSame(expected.get(i), batched.get(i));
+        }
+        for(SlidingWindowCollection<TestObject> collection : collections) {
+            assertSameWindows(one, collection);
+        }
+    }
+
+    @Test
+    public void testCheckpointRestore() throws IOException {
+        Random random = new Random(13);
+        SlidingWindowCollection<TestObject> swc = new SlidingWindowCollection<>(new ArrayList<>(),
+                testObject -> testObject.getTimestamp(), 50, 20, 100);
+        SessionWindowCollection<TestObject> sessions = new SessionWindowCollection<>(new RingBufferEventStore<>(),
+                testObject -> testObject.getTimestamp(), 100, 15);
+        sessions.setAllowedLateness(40);
+        for(int i = 0; i < 300000; i++) {
+            TestObject item = new TestObject(100 + i / 3 + random.nextInt(30));
+            swc.add(item);
+            sessions.add(item);
+        }
+
+        File file = File.createTempFile("windows", ".ckpt");
+        file.deleteOnExit();
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            swc.checkpoint(channel, CODEC);
+        }
+        SlidingWindowCollection<TestObject> restored = new SlidingWindowCollection<>(new ArrayList<>(),
+                testObject -> testObject.getTimestamp(), 50, 20, 100);
+        Iterable<WindowAggregate<Long>> counts = restored.addAggregation(Aggregators.count());
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            restored.restore(channel, CODEC);
+        }
+        assertSameWindows(swc, restored);
+        Iterator<WindowAggregate<Long>> countIt = counts.iterator();
+        for(TimeWindow<TestObject> window : swc)
+            Assert.assertEquals(window.size(), (long)countIt.next().getResult());
+
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            sessions.checkpoint(channel, CODEC);
+        }
+        SessionWindowCollection<TestObject> restoredSessions = new SessionWindowCollection<>(new RingBufferEventStore<>(),
+                testObject -> testObject.getTimestamp(), 100, 15);
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            restoredSessions.restore(channel, CODEC);
+        }
+        assertSameWindows(sessions, restoredSessions);
+        Assert.assertEquals(sessions.getWatermark(), restoredSessions.getWatermark());
+        // the closing state is restored along with the watermark: both collections accept and reject the same items
+        List<TestObject> late = new ArrayList<>();
+        List<TestObject> restoredLate = new ArrayList<>();
+        sessions.onLateItem(late::add);
+        restoredSessions.onLateItem(restoredLate::add);
+        sessions.advanceWatermark(sessions.getWatermark() + 100);
+        restoredSessions.advanceWatermark(restoredSessions.getWatermark() + 100);
+        for(long ts = sessions.getWatermark() - 200; ts < sessions.getWatermark(); ts += 7) {
+            sessions.add(new TestObject(ts));
+            restoredSessions.add(new TestObject(ts));
+        }
+        Assert.assertFalse(late.isEmpty());
+        Assert.assertEquals(late.size(), restoredLate.size());
+        assertSameWindows(sessions, restoredSessions);
+    }
+
+    @Test
+    public void testRestoreReanchorsAggregations() throws IOException {
+        SlidingWindowCollection<TestObject> swc = new SlidingWindowCollection<>(new ArrayList<>(),
+                testObject -> testObject.getTimestamp(), 10, 5, 3);
+        for(int i = 3; i < 500; i++)
+            swc.add(new TestObject(i));
+        File file = File.createTempFile("windows", ".ckpt");
+        file.deleteOnExit();
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            swc.checkpoint(channel, CODEC);
+        }
+
+        // registered on a grid anchored at 0, before the restore moves the windows onto the checkpoint's grid at 3
+        SlidingWindowCollection<TestObject> restored = new SlidingWindowCollection<>(new ArrayList<>(),
+                testObject -> testObject.getTimestamp(), 10, 5, 0);
+        Iterable<WindowAggregate<Long>> counts = restored.addAggregation(Aggregators.count());
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            restored.restore(channel, CODEC);
+        }
+        assertSameWindows(swc, restored);
+        Iterator<WindowAggregate<Long>> countIt = counts.iterator();
+        for(TimeWindow<TestObject> window : restored) {
+            WindowAggregate<Long> count = countIt.next();
+            Assert.assertEquals(window.getStartTime(), count.getStartTime());
+            Assert.assertEquals(window.size(), (long)count.getResult());
+        }
+        Assert.assertFalse(countIt.hasNext());
+    }
+
+    @Test
+    public void testRestoreKeepsCloseTrigger() throws IOException {
+        // a checkpoint written without closing, from a list without random access
+        TumblingWindowCollection<TestObject> twc = new TumblingWindowCollection<>(new LinkedList<>(),
+                testObject -> testObject.getTimestamp(), 10, 0);
+        for(int i = 0; i < 1000; i++)
+            twc.add(new TestObject(i));
+        File file = File.createTempFile("windows", ".ckpt");
+        file.deleteOnExit();
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            twc.checkpoint(channel, CODEC);
+        }
+
+        // the trigger and lateness set before the restore survive it and fire for the restored windows
+        TumblingWindowCollection<TestObject> restored = new TumblingWindowCollection<>(new LinkedList<>(),
+                testObject -> testObject.getTimestamp(), 10, 0);
+        List<TimeWindow<TestObject>> closed = new ArrayList<>();
+        restored.onWindowClose(closed::add);
+        restored.setAllowedLateness(5);
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            restored.restore(channel, CODEC);
+        }
+        assertSameWindows(twc, restored);
+        // windows ending at or before 999 - 5 have closed
+        Assert.assertEquals(99, closed.size());
+        restored.add(new TestObject(1009));
+        Assert.assertEquals(100, closed.size());
+    }
+
+    @Test
+    public void testRestoreRejectsMismatchedCheckpoints() throws IOException {
+        SlidingWindowCollection<TestObject> swc = new SlidingWindowCollection<>(new ArrayList<>(),
+                testObject -> testObject.getTimestamp(), 50, 20, 100);
+        for(int i = 0; i < 1000; i++)
+            swc.add(new TestObject(100 + i));
+        File file = File.createTempFile("windows", ".ckpt");
+        file.deleteOnExit();
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            swc.checkpoint(channel, CODEC);
+        }
+
+        SlidingWindowCollection<TestObject> other = new SlidingWindowCollection<>(new ArrayList<>(),
+                testObject -> testObject.getTimestamp(), 50, 25, 100);
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            other.restore(channel, CODEC);
+            Assert.fail("window parameters differ");
+        } catch(IOException e) {
+            // expected
+        }
+
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 10);
+        }
+        SlidingWindowCollection<TestObject> truncated = new SlidingWindowCollection<>(new ArrayList<>(),
+                testObject -> testObject.getTimestamp(), 50, 20, 100);
+        try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            truncated.restore(channel, CODEC);
+            Assert.fail("checkpoint is truncated");
+        } catch(EOFException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Counts the reads of items and timestamps made through a store.
+     */
+    static class CountingStore extends RingBufferEventStore<TestObject> {
+        int _gets;
+        int _timestampReads;
+
+        @Override
+        public TestObject get(int index) {
+            _gets++;
+            return super.get(index);
+        }
+
+        @Override
+        public long getTimestamp(int index) {
+            _timestampReads++;
+            return super.getTimestamp(index);
+        }
+
+        @Override
+        public int lowerBound(int fromIndex, long time) {
+            // use the interface's search over getTimestamp, so that searches are counted
+            int size = size();
+            int low = fromIndex, high = size;
+            while(low < high) {
+                int mid = (low + high) >>> 1;
+                if(getTimestamp(mid) < time)
+                    low = mid + 1;
+                else
+                    high = mid;
+            }
+            return low;
+        }
+    }
+
+    @Test
+    public void testLazyWindows() {
+        CountingStore store = new CountingStore();
+        SlidingWindowCollection<TestObject> swc = new SlidingWindowCollection<>(store,
+                testObject -> testObject.getTimestamp(), 100, 10, 0);
+        CountingStore sessionStore = new CountingStore();
+        SessionWindowCollection<TestObject> sessions = new SessionWindowCollection<>(sessionStore,
+                testObject -> testObject.getTimestamp(), 0, 5);
+        for(int i = 0; i < 10000; i++) {
+            swc.add(new TestObject(i));
+            sessions.add(new TestObject(i + (i / 100) * 10));
+        }
+
+        // reading the start and end times resolves nothing
+        store._timestampReads = 0;
+        sessionStore._timestampReads = 0;
+        int windows = 0;
+        for(TimeWindow<TestObject> window : swc) {
+            Assert.assertEquals(windows++ * 10, window.getStartTime());
+            Assert.assertTrue(window.getEndTime() > window.getStartTime());
+        }
+        for(TimeWindow<TestObject> window : sessions)
+            Assert.assertTrue(window.getEndTime() >= window.getStartTime());
+        // at most the newest timestamp of each collection is read
+        Assert.assertTrue(store._timestampReads <= 1);
+        Assert.assertTrue(sessionStore._timestampReads <= 1);
+
+        // sizes are found by searching timestamps, without reading items
+        store._gets = 0;
+        sessionStore._gets = 0;
+        for(TimeWindow<TestObject> window : swc)
+            Assert.assertTrue(window.size() > 0);
+        for(TimeWindow<TestObject> window : sessions)
+            Assert.assertEquals(100, window.size());
+        Assert.assertEquals(0, store._gets);
+        Assert.assertEquals(0, sessionStore._gets);
+    }
+
+    @Test
+    public void testRetentionPolicies() {
+        // a maximum count bounds the source within a batch of items
+        ArrayList<TestObject> sessionSource = new ArrayList<>();
+        SessionWindowCollection<TestObject> sessions = new SessionWindowCollection<>(sessionSource,
+                testObject -> testObject.getTimestamp(), 0, 5);
+        sessions.setRetentionPolicy(RetentionPolicies.maxCount(500), 50);
+        for(int i = 0; i < 10000; i++) {
+            sessions.add(new TestObject(i * 2 + (i / 100) * 10));
+            if(i >= 500) {
+                Assert.assertTrue(sessionSource.size() >= 500);
+                Assert.assertTrue(sessionSource.size() <= 550);
+            }
+        }
+
+        // a memory budget is a count bound; the start time stays on the tumbling window grid
+        ArrayList<TestObject> tumblingSource = new ArrayList<>();
+        TumblingWindowCollection<TestObject> twc = new TumblingWindowCollection<>(tumblingSource,
+                testObject -> testObject.getTimestamp(), 100, 0);
+        twc.setRetentionPolicy(RetentionPolicies.maxBytes(64000, 64));
+        for(int i = 0; i < 10000; i++) {
+            twc.add(new TestObject(i));
+            if(i >= 1000) {
+                Assert.assertTrue(tumblingSource.size() >= 1000);
+                // up to a batch, plus the items of the window the start time is aligned down to
+                Assert.assertTrue(tumblingSource.size() <= 1000 + 99 + 1100 / 8 + 1);
+            }
+        }
+        Assert.assertEquals(0, twc.iterator().next().getStartTime() % 100);
+
+        // a maximum age follows the watermark; aggregations and windows match a collection of the retained items
+        ArrayList<TestObject> slidingSource = new ArrayList<>();
+        SlidingWindowCollection<TestObject> swc = new SlidingWindowCollection<>(new RingBufferEventStore<>(),
+                testObject -> testObject.getTimestamp(), 100, 10, 0);
+        Iterable<WindowAggregate<Long>> counts = swc.addAggregation(Aggregators.count());
+        swc.setRetentionPolicy(RetentionPolicies.all(RetentionPolicies.maxAge(1000), RetentionPolicies.maxCount(5000)));
+        for(int i = 0; i < 100000; i++) {
+            TestObject item = new TestObject(i);
+            slidingSource.add(item);
+            swc.add(item);
+        }
+        long start = swc.iterator().next().getStartTime();
+        Assert.assertEquals(0, start % 10);
+        Assert.assertTrue(start >= 99999 - 1000 - 1000 / 8 - 10);
+        Assert.assertTrue(start <= 99999 - 1000 + 10);
+
+        SlidingWindowCollection<TestObject> expected = new SlidingWindowCollection<>(new ArrayList<>(slidingSource),
+                testObject -> testObject.getTimestamp(), 100, 10, start);
+        Iterator<TimeWindow<TestObject>> expectedIt = expected.iterator();
+        Iterator<WindowAggregate<Long>> countIt = counts.iterator();
+        for(TimeWindow<TestObject> window : swc) {
+            TimeWindow<TestObject> other = expectedIt.next();
+            Assert.assertEquals(other.getStartTime(), window.getStartTime());
+            Assert.assertEquals(other.size(), window.size());
+            Assert.assertEquals((long)window.size(), (long)countIt.next().getResult());
+        }
+        Assert.assertFalse(expectedIt.hasNext());
+        Assert.assertFalse(countIt.hasNext());
+
+        // items for times before the advanced start time are discarded
+        swc.add(new TestObject(start - 1));
+        Assert.assertEquals(start, swc.iterator().next().getStartTime());
+    }
+
+    @Test
+    public void testRetentionSmallerThanWindow() {
+        // an age bound smaller than the window never evicts the window receiving items
+        ArrayList<TestObject> source = new ArrayList<>();
+        TumblingWindowCollection<TestObject> twc = new TumblingWindowCollection<>(source,
+                testObject -> testObject.getTimestamp(), 60, 0);
+        twc.setRetentionPolicy(RetentionPolicies.maxAge(10), 1);
+        for(int i = 0; i < 120; i++) {
+            twc.add(new TestObject(i));
+            // every item of the open window is retained, and at most the window before it
+            Assert.assertTrue(source.get(0).getTimestamp() <= i - i % 60);
+            Assert.assertTrue(source.size() <= i % 60 + 1 + 60);
+        }
+        Iterator<TimeWindow<TestObject>> windows = twc.iterator();
+        TimeWindow<TestObject> window = windows.next();
+        Assert.assertEquals(60, window.getStartTime());
+        Assert.assertEquals(60, window.size());
+        Assert.assertFalse(windows.hasNext());
+
+        // a count bound smaller than the window keeps the items of the open window
+        ArrayList<TestObject> hourly = new ArrayList<>();
+        TumblingWindowCollection<TestObject> hours = new TumblingWindowCollection<>(hourly,
+                testObject -> testObject.getTimestamp(), 3600, 0);
+        hours.setRetentionPolicy(RetentionPolicies.maxCount(1000), 1);
+        for(int i = 0; i < 3600; i++) {
+            hours.add(new TestObject(i));
+        }
+        Assert.assertEquals(3600, hourly.size());
+        for(int i = 3600; i < 4700; i++) {
+            hours.add(new TestObject(i));
+        }
+        // once the 1000 newest items are all in the next window, the previous one is evicted
+        Assert.assertEquals(3600, hours.iterator().next().getStartTime());
+        Assert.assertEquals(1100, hourly.size());
+    }
+
+    @Test
+    public void testMaxAgeNearMinimumWatermark() {
+        RingBufferEventStore<TestObject> store = new RingBufferEventStore<>();
+        Assert.assertEquals(Long.MIN_VALUE, RetentionPolicies.maxAge(1000).retainFrom(store, Long.MIN_VALUE));
+        Assert.assertEquals(Long.MIN_VALUE, RetentionPolicies.maxAge(1000).retainFrom(store, Long.MIN_VALUE + 10));
+        Assert.assertEquals(Long.MIN_VALUE, RetentionPolicies.maxAge(Long.MAX_VALUE).retainFrom(store, -2));
+        Assert.assertEquals(Long.MIN_VALUE + 1, RetentionPolicies.maxAge(Long.MAX_VALUE).retainFrom(store, 0));
+        Assert.assertEquals(-1000, RetentionPolicies.maxAge(1000).retainFrom(store, 0));
+    }
+}
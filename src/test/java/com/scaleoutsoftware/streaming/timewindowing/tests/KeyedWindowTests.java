@@ -0,0 +1,209 @@
+/*
+ Copyright (c) 2017 by ScaleOut Software, Inc.
+
+ Licensed under the Apache License, Version 2.0 (the "License");
+ you may not use this file except in compliance with the License.
+ You may obtain a copy of the License at
+
+ http://www.apache.org/licenses/LICENSE-2.0
+
+ Unless required by applicable law or agreed to in writing, software
+ distributed under the License is distributed on an "AS IS" BASIS,
+ WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ See the License for the specific language governing permissions and
+ limitations under the License.
+*/
+package com.scaleoutsoftware.streaming.timewindowing.tests;
+
+import com.scaleoutsoftware.streaming.timewindowing.KeyedWindowCollection;
+import com.scaleoutsoftware.streaming.timewindowing.SessionWindowCollection;
+import com.scaleoutsoftware.streaming.timewindowing.SlidingWindowCollection;
+import com.scaleoutsoftware.streaming.timewindowing.TimeWindow;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+public class KeyedWindowTests {
+    private static final int KEYS = 7;
+
+    private static Long keyOf(TestObject testObject) {
+        return testObject.getTimestamp() % KEYS;
+    }
+
+    @Test
+    public void testKeyedSlidingWindowsMatchPerKeyCollections() {
+        Random random = new Random(7);
+        KeyedWindowCollection<Long, TestObject> keyed = KeyedWindowCollection.sliding(KeyedWindowTests::keyOf,
+                TestObject::getTimestamp, 120, 30, 1000);
+        Map<Long, SlidingWindowCollection<TestObject>> expected = new HashMap<>();
+        for(int i = 0; i < 2000; i++) {
+            TestObject item = new TestObject(950 + i * 3 + random.nextInt(40));
+            keyed.add(item);
+            expected.computeIfAbsent(keyOf(item), k -> new SlidingWindowCollection<>(new ArrayList<>(),
+                    TestObject::getTimestamp, 120, 30, 1000)).add(item);
+        }
+
+        Assert.assertEquals(KEYS, keyed.keyCount());
+        for(Map.Entry<Long, SlidingWindowCollection<TestObject>> entry : expected.entrySet())
+            assertSameNonEmptyWindows(entry.getValue(), keyed.windows(entry.getKey()));
+    }
+
+    @Test
+    public void testKeyedSessionWindowsMatchPerKeyCollections() {
+        Random random = new Random(11);
+        KeyedWindowCollection<Long, TestObject> keyed = KeyedWindowCollection.session(KeyedWindowTests::keyOf,
+                TestObject::getTimestamp, 0, 40);
+        Map<Long, SessionWindowCollection<TestObject>> expected = new HashMap<>();
+        for(int i = 0; i < 2000; i++) {
+            // bursts of activity separated by quiet periods
+            TestObject item = new TestObject(i * 5 + (i / 100) * 500 + random.nextInt(20));
+            keyed.add(item);
+            expected.computeIfAbsent(keyOf(item), k -> new SessionWindowCollection<>(new ArrayList<>(),
+                    TestObject::getTimestamp, 0, 40)).add(item);
+        }
+
+        for(Map.Entry<Long, SessionWindowCollection<TestObject>> entry : expected.entrySet())
+            assertSameNonEmptyWindows(entry.getValue(), keyed.windows(entry.getKey()));
+    }
+
+    @Test
+    public void testPollReadyWindows() {
+        KeyedWindowCollection<Long, TestObject> keyed = KeyedWindowCollection.tumbling(KeyedWindowTests::keyOf,
+                TestObject::getTimestamp, 100, 0);
+        for(int i = 0; i < 1000; i++)
+            keyed.add(new TestObject(i));
+
+        List<TimeWindow<TestObject>> polled = new ArrayList<>();
+        int[] items = new int[1];
+        keyed.pollReadyWindows(500, (key, window) -> {
+            Assert.assertTrue(window.getEndTime() <= 500);
+            for(TestObject item : window) {
+                Assert.assertEquals(key, keyOf(item));
+                Assert.assertTrue(item.getTimestamp() >= window.getStartTime() && item.getTimestamp() < window.getEndTime());
+                items[0]++;
+            }
+            polled.add(window);
+        });
+        Assert.assertEquals(5 * KEYS, polled.size());
+        Assert.assertEquals(500, items[0]);
+        // polled items are released and late items for polled windows are discarded
+        Assert.assertEquals(500, keyed.itemCount());
+        keyed.add(new TestObject(250));
+        Assert.assertEquals(500, keyed.itemCount());
+
+        // windows are only polled once
+        polled.clear();
+        keyed.pollReadyWindows(500, (key, window) -> polled.add(window));
+        Assert.assertEquals(0, polled.size());
+        keyed.pollReadyWindows(1000, (key, window) -> polled.add(window));
+        Assert.assertEquals(5 * KEYS, polled.size());
+        Assert.assertEquals(0, keyed.itemCount());
+    }
+
+    @Test
+    public void testRemoveKeys() {
+        KeyedWindowCollection<Long, TestObject> keyed = KeyedWindowCollection.tumbling(testObject -> testObject.getTimestamp() / 10,
+                TestObject::getTimestamp, 100, 0);
+        for(int i = 0; i < 100000; i++)
+            keyed.add(new TestObject(i));
+        Assert.assertEquals(10000, keyed.keyCount());
+
+        for(long key = 0; key < 10000; key += 2)
+            Assert.assertTrue(keyed.remove(key));
+        Assert.assertFalse(keyed.remove(0L));
+        Assert.assertEquals(5000, keyed.keyCount());
+        Assert.assertEquals(50000, keyed.itemCount());
+        for(long key = 0; key < 10000; key++) {
+            Iterator<TimeWindow<TestObject>> it = keyed.windows(key).iterator();
+            if(key % 2 == 0) {
+                Assert.assertFalse(it.hasNext());
+            } else {
+                TimeWindow<TestObject> window = it.next();
+                Assert.assertEquals(10, window.size());
+                Assert.assertFalse(it.hasNext());
+            }
+        }
+    }
+
+    @Test
+    public void testIncrementalPollsMatchPerKeyCollections() {
+        assertPollsMatch(KeyedWindowCollection.sliding(testObject -> testObject.getTimestamp() % 50,
+                TestObject::getTimestamp, 120, 30, 0),
+                () -> new SlidingWindowCollection<>(new ArrayList<>(), TestObject::getTimestamp, 120, 30, 0));
+        assertPollsMatch(KeyedWindowCollection.session(testObject -> testObject.getTimestamp() % 50,
+                TestObject::getTimestamp, 0, 200),
+                () -> new SessionWindowCollection<>(new ArrayList<>(), TestObject::getTimestamp, 0, 200));
+    }
+
+    /**
+     * Polls a keyed collection after every batch of items and checks that the windows polled over all polls are the
+     * non-empty windows of per-key collections, each polled once, in order and only once complete.
+     */
+    private static void assertPollsMatch(KeyedWindowCollection<Long, TestObject> keyed,
+                                         Supplier<Iterable<TimeWindow<TestObject>>> perKey) {
+        Random random = new Random(13);
+        Map<Long, Iterable<TimeWindow<TestObject>>> expected = new HashMap<>();
+        Map<Long, List<String>> polled = new HashMap<>();
+        for(int i = 0; i < 5000; i++) {
+            // bursts of activity on a few keys at a time, up to 40 units out of order
+            long timestamp = i * 3 + (i / 500) * 1000 + random.nextInt(40);
+            TestObject item = new TestObject(timestamp);
+            keyed.add(item);
+            Iterable<TimeWindow<TestObject>> windows = expected.computeIfAbsent(timestamp % 50, k -> perKey.get());
+            if(windows instanceof SlidingWindowCollection)
+                ((SlidingWindowCollection<TestObject>)windows).add(item);
+            else
+                ((SessionWindowCollection<TestObject>)windows).add(item);
+
+            if(i % 100 == 99) {
+                // no later item is before the poll time, so no item is discarded
+                long time = (i + 1) * 3 + ((i + 1) / 500) * 1000;
+                keyed.pollReadyWindows(time, (key, window) -> {
+                    Assert.assertTrue(window.getEndTime() <= time);
+                    polled.computeIfAbsent(key, k -> new ArrayList<>()).add(describe(window));
+                });
+            }
+        }
+        keyed.pollReadyWindows(Long.MAX_VALUE, (key, window) -> polled.computeIfAbsent(key, k -> new ArrayList<>()).add(describe(window)));
+        Assert.assertEquals(0, keyed.itemCount());
+
+        for(Map.Entry<Long, Iterable<TimeWindow<TestObject>>> entry : expected.entrySet()) {
+            List<String> windows = new ArrayList<>();
+            for(TimeWindow<TestObject> window : entry.getValue()) {
+                if(window.size() > 0)
+                    windows.add(describe(window));
+            }
+            Assert.assertEquals(windows, polled.get(entry.getKey()));
+        }
+    }
+
+    private static String describe(TimeWindow<TestObject> window) {
+        StringBuilder builder = new StringBuilder().append(window.getStartTime()).append(':');
+        for(TestObject item : window)
+            builder.append(item.getTimestamp()).append(',');
+        return builder.toString();
+    }
+
+    private static void assertSameNonEmptyWindows(Iterable<TimeWindow<TestObject>> expected, Iterable<TimeWindow<TestObject>> actual) {
+        Iterator<TimeWindow<TestObject>> it = actual.iterator();
+        for(TimeWindow<TestObject> window : expected) {
+            if(window.size() == 0)
+                continue;
+            TimeWindow<TestObject> other = it.next();
+            Assert.assertEquals(window.getStartTime(), other.getStartTime());
+            Assert.assertEquals(window.getEndTime(), other.getEndTime());
+            Assert.assertEquals(window.size(), other.size());
+            Iterator<TestObject> items = other.iterator();
+            for(TestObject item : window)
+                Assert.assertSame(item, items.next());
+        }
+        Assert.assertFalse(it.hasNext());
+    }
+}
@@ -15,14 +15,30 @@
 */
 package com.scaleoutsoftware.streaming.timewindowing.tests;
 
+import com.scaleoutsoftware.streaming.timewindowing.Aggregators;
+import com.scaleoutsoftware.streaming.timewindowing.ConcurrentTumblingWindowCollection;
 import com.scaleoutsoftware.streaming.timewindowing.SessionWindowCollection;
 import com.scaleoutsoftware.streaming.timewindowing.SlidingWindowCollection;
 import com.scaleoutsoftware.streaming.timewindowing.TimeWindow;
 import com.scaleoutsoftware.streaming.timewindowing.TumblingWindowCollection;
+import com.scaleoutsoftware.streaming.timewindowing.WindowMetrics;
+import com.scaleoutsoftware.streaming.timewindowing.WindowedStream;
+import com.scaleoutsoftware.streaming.timewindowing.Windowing;
 import org.junit.Assert;
 import org.junit.Test;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 public class WindowingTests {
 
@@ -210,4 +226,578 @@ public class WindowingTests {
 
         Assert.assertTrue(test.size() == 0);
     }
+
+    @Test
+    public void testSlidingWindowViews() {
+        ArrayList<TestObject> source = new ArrayList<>();
+        for(long ts = 0; ts < 100; ts += 10) {
+            source.add(new TestObject(ts));
+        }
+
+        // 30 unit windows every 10 units: each full window holds 3 items and shares 2 of them with its neighbor
+        Iterator<TimeWindow<TestObject>> windows = Windowing.toSlidingWindows(source,
+                testObject -> testObject.getTimestamp(),
+                0,
+                100,
+                30,
+                10).iterator();
+
+        long expectedStart = 0;
+        while(windows.hasNext()) {
+            TimeWindow<TestObject> window = windows.next();
+            Assert.assertEquals(expectedStart, window.getStartTime());
+            Assert.assertEquals(Math.min(3, (100 - expectedStart) / 10), window.size());
+            long expectedTimestamp = expectedStart;
+            int count = 0;
+            for(TestObject item : window) {
+                Assert.assertSame(source.get((int)(expectedTimestamp / 10)), item);
+                expectedTimestamp += 10;
+                count++;
+            }
+            Assert.assertEquals(window.size(), count);
+            expectedStart += 10;
+        }
+        Assert.assertEquals(100, expectedStart);
+    }
+
+    @Test
+    public void testSparseWindowBoundaries() {
+        // bursts of 5 items every 1000 units, scanned with 10 unit tumbling windows: most windows are empty
+        ArrayList<TestObject> arraySource = new ArrayList<>();
+        for(long burst = 0; burst < 10000; burst += 1000) {
+            for(long ts = burst; ts < burst + 5; ts++) {
+                arraySource.add(new TestObject(ts));
+            }
+        }
+        List<TestObject> linkedSource = new LinkedList<>(arraySource);
+
+        for(List<TestObject> source : Arrays.asList(arraySource, linkedSource)) {
+            int windows = 0, nonEmpty = 0, items = 0;
+            for(TimeWindow<TestObject> window : Windowing.toTumblingWindows(source,
+                    testObject -> testObject.getTimestamp(), 0, 10000, 10)) {
+                if(window.size() > 0) {
+                    Assert.assertEquals(0, window.getStartTime() % 1000);
+                    Assert.assertEquals(5, window.size());
+                    nonEmpty++;
+                }
+                for(TestObject t : window) {
+                    Assert.assertTrue(t.getTimestamp() >= window.getStartTime() && t.getTimestamp() < window.getEndTime());
+                    items++;
+                }
+                windows++;
+            }
+            Assert.assertEquals(1000, windows);
+            Assert.assertEquals(10, nonEmpty);
+            Assert.assertEquals(source.size(), items);
+        }
+    }
+
+    @Test
+    public void testSelectorInvokedOncePerItem() {
+        long[] selections = new long[1];
+        ArrayList<TestObject> source = new ArrayList<>();
+        SlidingWindowCollection<TestObject> swc = new SlidingWindowCollection<>(source,
+                testObject -> {
+                    selections[0]++;
+                    return testObject.getTimestamp();
+                },
+                40,
+                10,
+                0);
+
+        // add out of order so that items are inserted in the middle of the source
+        for(long ts = 0; ts < 1000; ts += 20) {
+            swc.add(new TestObject(ts + 10));
+            swc.add(new TestObject(ts));
+        }
+        Assert.assertEquals(100, selections[0]);
+
+        int windows = 0;
+        for(TimeWindow<TestObject> window : swc) {
+            long prev = Long.MIN_VALUE;
+            for(TestObject t : window) {
+                Assert.assertTrue(t.getTimestamp() >= prev);
+                prev = t.getTimestamp();
+            }
+            windows++;
+        }
+        Assert.assertEquals(100, windows);
+        Assert.assertEquals(100, selections[0]);
+    }
+
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 10000;
+        ArrayList<TestObject> source = new ArrayList<>();
+        ConcurrentTumblingWindowCollection<TestObject> twc = new ConcurrentTumblingWindowCollection<>(source,
+                testObject -> testObject.getTimestamp(),
+                100,
+                0);
+
+        Thread[] threads = new Thread[producers];
+        for(int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads[p] = new Thread(() -> {
+                for(int i = 0; i < perProducer; i++) {
+                    // producers interleave their timestamps, so every drained batch must be merged
+                    twc.add(new TestObject((long)i * producers + producer));
+                }
+            });
+            threads[p].start();
+        }
+        // drain while the producers are running
+        while(source.size() < producers * perProducer / 2) {
+            twc.drain();
+            Thread.yield();
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+
+        int items = 0;
+        for(TimeWindow<TestObject> window : twc) {
+            for(TestObject t : window) {
+                Assert.assertEquals(items, t.getTimestamp());
+                items++;
+            }
+        }
+        Assert.assertEquals(producers * perProducer, items);
+        Assert.assertEquals(producers * perProducer, source.size());
+    }
+
+    @Test
+    public void testParallelWindowStreams() {
+        ArrayList<TestObject> source = new ArrayList<>();
+        SlidingWindowCollection<TestObject> swc = new SlidingWindowCollection<>(source,
+                testObject -> testObject.getTimestamp(), 100, 10, 0);
+        SessionWindowCollection<TestObject> sessions = new SessionWindowCollection<>(new ArrayList<>(),
+                testObject -> testObject.getTimestamp(), 0, 5);
+        for(int i = 0; i < 10000; i++) {
+            TestObject item = new TestObject(i * 3 + (i / 50) * 20);
+            swc.add(item);
+            sessions.add(item);
+        }
+
+        assertParallelMatchesSequential(swc);
+        assertParallelMatchesSequential(sessions);
+        assertParallelMatchesSequential(Windowing.toSlidingWindows(source, testObject -> testObject.getTimestamp(), 0, 40000, 100, 10));
+        assertParallelMatchesSequential(Windowing.toSessionWindows(source, testObject -> testObject.getTimestamp(), 0, 40000, 5));
+
+        // the cursor over a LinkedList is not thread-safe, so its windows are traversed by one thread
+        LinkedList<TestObject> linked = new LinkedList<>(source);
+        assertParallelMatchesSequential(Windowing.toSlidingWindows(linked, testObject -> testObject.getTimestamp(), 0, 40000, 100, 10), false);
+        assertParallelMatchesSequential(Windowing.toSessionWindows(linked, testObject -> testObject.getTimestamp(), 0, 40000, 5), false);
+    }
+
+    private static void assertParallelMatchesSequential(Iterable<TimeWindow<TestObject>> windows) {
+        assertParallelMatchesSequential(windows, true);
+    }
+
+    private static void assertParallelMatchesSequential(Iterable<TimeWindow<TestObject>> windows, boolean splittable) {
+        List<String> sequential = describe(windows);
+        // iterating again must not observe state left behind by the first iteration
+        Assert.assertEquals(sequential, describe(windows));
+
+        Spliterator<TimeWindow<TestObject>> spliterator = windows.spliterator();
+        Assert.assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED));
+        Assert.assertEquals(sequential.size(), spliterator.getExactSizeIfKnown());
+        Spliterator<TimeWindow<TestObject>> prefix = spliterator.trySplit();
+        if(splittable) {
+            Assert.assertNotNull(prefix);
+            Assert.assertEquals(sequential.size(), prefix.estimateSize() + spliterator.estimateSize());
+        } else {
+            Assert.assertNull(prefix);
+        }
+
+        List<String> parallel = StreamSupport.stream(windows.spliterator(), true)
+                .map(window -> window.getStartTime() + "-" + window.getEndTime() + ":" + window.size())
+                .collect(Collectors.toList());
+        Assert.assertEquals(sequential, parallel);
+        if(!splittable) {
+            // repeated parallel passes must not corrupt the shared cursor
+            for(int i = 0; i < 5; i++) {
+                Assert.assertEquals(sequential, StreamSupport.stream(windows.spliterator(), true)
+                        .map(window -> window.getStartTime() + "-" + window.getEndTime() + ":" + window.size())
+                        .collect(Collectors.toList()));
+            }
+        }
+    }
+
+    private static List<String> describe(Iterable<TimeWindow<TestObject>> windows) {
+        List<String> descriptions = new ArrayList<>();
+        for(TimeWindow<TestObject> window : windows)
+            descriptions.add(window.getStartTime() + "-" + window.getEndTime() + ":" + window.size());
+        return descriptions;
+    }
+
+    @Test
+    public void testWindowCloseTriggers() {
+        ArrayList<TestObject> source = new ArrayList<>();
+        SlidingWindowCollection<TestObject> swc = new SlidingWindowCollection<>(source,
+                testObject -> testObject.getTimestamp(), 100, 50, 0);
+        List<TimeWindow<TestObject>> closed = new ArrayList<>();
+        List<TestObject> late = new ArrayList<>();
+        swc.setAllowedLateness(20);
+        swc.onWindowClose(window -> closed.add(window));
+        swc.onLateItem(late::add);
+
+        for(int i = 0; i < 300; i++)
+            swc.add(new TestObject(i));
+        Assert.assertEquals(299, swc.getWatermark());
+        // windows ending at or before 299 - 20 have closed: [0,100), [50,150) ... [150,250)
+        Assert.assertEquals(4, closed.size());
+        for(int i = 0; i < closed.size(); i++) {
+            Assert.assertEquals(i * 50, closed.get(i).getStartTime());
+            Assert.assertEquals(i * 50 + 100, closed.get(i).getEndTime());
+            Assert.assertEquals(100, closed.get(i).size());
+        }
+
+        // within the allowed lateness: [200,300) is still open
+        swc.add(new TestObject(210));
+        // every window holding 190 has closed
+        swc.add(new TestObject(190));
+        Assert.assertEquals(1, late.size());
+        Assert.assertEquals(190, late.get(0).getTimestamp());
+        Assert.assertEquals(301, source.size());
+
+        swc.advanceWatermark(370);
+        Assert.assertEquals(6, closed.size());
+        Assert.assertEquals(101, closed.get(4).size());
+        // an older watermark is ignored
+        swc.advanceWatermark(0);
+        Assert.assertEquals(370, swc.getWatermark());
+        Assert.assertEquals(6, closed.size());
+    }
+
+    @Test
+    public void testCloseSkipsEmptyWindows() {
+        // a start time far in the past and long gaps between bursts would be billions of empty windows
+        SlidingWindowCollection<TestObject> swc = new SlidingWindowCollection<>(new ArrayList<>(),
+                testObject -> testObject.getTimestamp(), 10, 5, -1000000000000L);
+        SlidingWindowCollection<TestObject> expected = new SlidingWindowCollection<>(new ArrayList<>(),
+                testObject -> testObject.getTimestamp(), 10, 5, -1000000000000L);
+        // windows shorter than their step leave gaps that hold items
+        SlidingWindowCollection<TestObject> gaps = new SlidingWindowCollection<>(new ArrayList<>(),
+                testObject -> testObject.getTimestamp(), 10, 25, 0);
+        List<String> closed = new ArrayList<>();
+        swc.onWindowClose(window -> closed.add(window.getStartTime() + "-" + window.getEndTime() + ":" + window.size()));
+        List<String> closedGaps = new ArrayList<>();
+        gaps.onWindowClose(window -> closedGaps.add(window.getStartTime() + "-" + window.getEndTime() + ":" + window.size()));
+        long time = 0;
+        for(int burst = 0; burst < 20; burst++) {
+            time += 1000000000L;
+            for(int i = 0; i < 10; i++) {
+                swc.add(new TestObject(time + i * 3));
+                expected.add(new TestObject(time + i * 3));
+                gaps.add(new TestObject(time + i * 3));
+            }
+        }
+        swc.advanceWatermark(1000000000000L);
+        gaps.advanceWatermark(1000000000000L);
+        expected.setSkipEmptyWindows(true);
+        List<String> pulled = describe(expected);
+        // the pulled collection clamps its last windows to the most recent item
+        Assert.assertEquals(pulled.size(), closed.size());
+        Assert.assertEquals(pulled.subList(0, pulled.size() - 2), closed.subList(0, pulled.size() - 2));
+        // each burst falls in two of the gapped windows
+        Assert.assertEquals(40, closedGaps.size());
+
+        WindowedStream<TestObject> stream = WindowedStream.tumbling(testObject -> testObject.getTimestamp(), 10, 0);
+        List<Long> counts = new ArrayList<>();
+        stream.onAggregate(Aggregators.count(), aggregate -> counts.add(aggregate.getResult()));
+        stream.accept(new TestObject(5));
+        stream.accept(new TestObject(1000000000000L));
+        stream.advanceWatermark(2000000000000L);
+        Assert.assertEquals(Arrays.asList(1L, 1L), counts);
+    }
+
+    @Test
+    public void testSessionCloseTriggers() {
+        SessionWindowCollection<TestObject> sessions = new SessionWindowCollection<>(new ArrayList<>(),
+                testObject -> testObject.getTimestamp(), 0, 10);
+        List<TimeWindow<TestObject>> closed = new ArrayList<>();
+        List<TestObject> late = new ArrayList<>();
+        sessions.onWindowClose(window -> closed.add(window));
+        sessions.onLateItem(late::add);
+
+        // sessions of ten items separated by gaps of 50
+        for(int session = 0; session < 5; session++) {
+            for(int i = 0; i < 10; i++)
+                sessions.add(new TestObject(session * 100 + i * 5));
+        }
+        // the last session may still be extended
+        Assert.assertEquals(4, closed.size());
+        for(int i = 0; i < closed.size(); i++) {
+            Assert.assertEquals(i * 100, closed.get(i).getStartTime());
+            Assert.assertEquals(i * 100 + 45, closed.get(i).getEndTime());
+            Assert.assertEquals(10, closed.get(i).size());
+        }
+
+        // would have extended a closed session
+        sessions.add(new TestObject(350));
+        Assert.assertEquals(1, late.size());
+        // starts a new session between closed ones
+        sessions.add(new TestObject(370));
+        Assert.assertEquals(1, late.size());
+
+        sessions.advanceWatermark(456);
+        Assert.assertEquals(6, closed.size());
+        Assert.assertEquals(370, closed.get(4).getStartTime());
+        Assert.assertEquals(1, closed.get(4).size());
+        Assert.assertEquals(10, closed.get(5).size());
+    }
+
+    @Test
+    public void testWindowedStream() {
+        Random random = new Random(3);
+        ArrayList<TestObject> source = new ArrayList<>();
+        SlidingWindowCollection<TestObject> swc = new SlidingWindowCollection<>(source,
+                testObject -> testObject.getTimestamp(), 100, 25, 0);
+        WindowedStream<TestObject> stream = WindowedStream.sliding(testObject -> testObject.getTimestamp(), 100, 25, 0);
+        stream.setAllowedLateness(30);
+        List<String> pushed = new ArrayList<>();
+        List<Long> counts = new ArrayList<>();
+        stream.onWindow(window -> pushed.add(window.getStartTime() + "-" + window.getEndTime() + ":" + window.size()));
+        stream.onAggregate(Aggregators.count(), aggregate -> counts.add(aggregate.getResult()));
+
+        for(int i = 0; i < 5000; i++) {
+            // up to 30 units out of order, within the allowed lateness
+            TestObject item = new TestObject(i * 2 + random.nextInt(30));
+            swc.add(item);
+            stream.accept(item);
+        }
+        stream.advanceWatermark(20000);
+
+        List<String> pulled = describe(swc);
+        // the pulled collection clamps its last window to the most recent item; the stream closes every window in full
+        Assert.assertEquals(pulled.subList(0, pulled.size() - 4), pushed.subList(0, pulled.size() - 4));
+        Assert.assertEquals(pushed.size(), counts.size());
+        for(int i = 0; i < pushed.size(); i++)
+            Assert.assertEquals(Long.parseLong(pushed.get(i).split(":")[1]), (long)counts.get(i));
+    }
+
+    @Test
+    public void testWindowedSessionAggregates() {
+        Random random = new Random(9);
+        WindowedStream<TestObject> stream = WindowedStream.session(testObject -> testObject.getTimestamp(), 0, 20);
+        stream.setAllowedLateness(60);
+        List<String> sums = new ArrayList<>();
+        List<String> aggregates = new ArrayList<>();
+        stream.onWindow(window -> {
+            double sum = 0;
+            for(TestObject item : window)
+                sum += item.getTimestamp();
+            sums.add(window.getStartTime() + ":" + sum);
+        });
+        stream.onAggregate(Aggregators.sum(testObject -> testObject.getTimestamp()),
+                aggregate -> aggregates.add(aggregate.getStartTime() + ":" + aggregate.getResult()));
+
+        for(int i = 0; i < 3000; i++) {
+            // bursts separated by quiet periods; late items can extend sessions from either side or merge two of them
+            stream.accept(new TestObject(i * 4 + (i / 50) * 200 + random.nextInt(60)));
+        }
+        stream.advanceWatermark(Long.MAX_VALUE / 2);
+
+        Assert.assertTrue(sums.size() >= 60);
+        Assert.assertEquals(sums, aggregates);
+    }
+
+    @Test
+    public void testSessionIndexMatchesScan() {
+        Random random = new Random(5);
+        ArrayList<TestObject> source = new ArrayList<>();
+        SessionWindowCollection<TestObject> sessions = new SessionWindowCollection<>(source,
+                testObject -> testObject.getTimestamp(), 0, 10);
+        for(int i = 0; i < 3000; i++) {
+            // arbitrary order, so items extend sessions at both ends and merge neighbouring sessions
+            sessions.add(new TestObject(random.nextInt(40000)));
+            if(i % 250 == 0)
+                Assert.assertEquals(describe(Windowing.toSessionWindows(source, testObject -> testObject.getTimestamp(), 0, 40000, 10)),
+                        describe(sessions));
+        }
+        Assert.assertEquals(describe(Windowing.toSessionWindows(source, testObject -> testObject.getTimestamp(), 0, 40000, 10)),
+                describe(sessions));
+        assertParallelMatchesSequential(sessions);
+    }
+
+    @Test
+    public void testWindowMetrics() throws Exception {
+        ArrayList<TestObject> source = new ArrayList<>();
+        TumblingWindowCollection<TestObject> twc = new TumblingWindowCollection<>(source,
+                testObject -> testObject.getTimestamp(), 10, 100);
+        WindowMetrics metrics = new WindowMetrics();
+        twc.setMetrics(metrics);
+
+        for(int i = 100; i < 200; i++)
+            twc.add(new TestObject(i));
+        // 3 items newer than 197, and one item before the start time
+        twc.add(new TestObject(197));
+        twc.add(new TestObject(50));
+        // a batch with an item 20 items from the tail, and an item well past a gap of empty windows
+        twc.addAll(Arrays.asList(new TestObject(180), new TestObject(300)));
+
+        Assert.assertEquals(104, metrics.getSelectorInvocations());
+        Assert.assertEquals(103, metrics.getInserts());
+        Assert.assertEquals(2, metrics.getOutOfOrderInserts());
+        Assert.assertEquals(1, metrics.getDiscardedItems());
+        long[] histogram = metrics.getOutOfOrderDistanceHistogram();
+        Assert.assertEquals(101, histogram[0]);
+        // distance 2 to 3
+        Assert.assertEquals(1, histogram[2]);
+        // distance 16 to 31
+        Assert.assertEquals(1, histogram[5]);
+
+        // windows whose items are never read are not looked up to count empty windows
+        int windows = 0;
+        for(TimeWindow<TestObject> window : twc)
+            windows++;
+        Assert.assertEquals(1, metrics.getIterations());
+        Assert.assertEquals(windows, metrics.getWindowsMaterialized());
+        Assert.assertEquals(0, metrics.getEmptyWindows());
+        Assert.assertTrue(metrics.getMaxIterationNanos() > 0);
+
+        int empty = 0;
+        for(TimeWindow<TestObject> window : twc) {
+            if(window.size() == 0)
+                empty++;
+        }
+        Assert.assertEquals(10, empty);
+        Assert.assertEquals(2, metrics.getIterations());
+        Assert.assertEquals(10, metrics.getEmptyWindows());
+
+        // parallel streams report a single pass once every split is exhausted
+        long occupied = StreamSupport.stream(twc.spliterator(), true).filter(window -> window.size() > 0).count();
+        Assert.assertEquals(windows - empty, occupied);
+        Assert.assertEquals(3, metrics.getIterations());
+        Assert.assertEquals(3 * windows, metrics.getWindowsMaterialized());
+        Assert.assertEquals(20, metrics.getEmptyWindows());
+
+        ObjectName name = metrics.register("testWindowMetrics");
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            Assert.assertEquals(103L, server.getAttribute(name, "Inserts"));
+            metrics.reset();
+            Assert.assertEquals(0L, server.getAttribute(name, "Inserts"));
+        } finally {
+            WindowMetrics.unregister(name);
+        }
+
+        // without a listener, nothing is measured
+        twc.setMetrics(null);
+        twc.add(new TestObject(301));
+        Assert.assertEquals(0, metrics.getInserts());
+    }
+
+    @Test
+    public void testReusedWindows() {
+        SlidingWindowCollection<TestObject> swc = new SlidingWindowCollection<>(new ArrayList<>(),
+                testObject -> testObject.getTimestamp(), 100, 10, 0);
+        TumblingWindowCollection<TestObject> twc = new TumblingWindowCollection<>(new LinkedList<>(),
+                testObject -> testObject.getTimestamp(), 100, 0);
+        SessionWindowCollection<TestObject> sessions = new SessionWindowCollection<>(new ArrayList<>(),
+                testObject -> testObject.getTimestamp(), 0, 5);
+        for(int i = 0; i < 5000; i++) {
+            TestObject item = new TestObject(i * 3 + (i / 50) * 20);
+            swc.add(item);
+            twc.add(item);
+            sessions.add(item);
+        }
+
+        List<Iterable<TimeWindow<TestObject>>> collections = Arrays.asList(swc, twc, sessions);
+        List<List<String>> expected = new ArrayList<>();
+        for(Iterable<TimeWindow<TestObject>> windows : collections)
+            expected.add(describeItems(windows));
+        swc.setReuseWindows(true);
+        twc.setReuseWindows(true);
+        sessions.setReuseWindows(true);
+
+        List<List<String>> reused = new ArrayList<>();
+        for(Iterable<TimeWindow<TestObject>> windows : collections) {
+            reused.add(describeItems(windows));
+            Iterator<TimeWindow<TestObject>> iterator = windows.iterator();
+            TimeWindow<TestObject> first = iterator.next();
+            Assert.assertSame(first, iterator.next());
+            assertParallelMatchesSequential(windows);
+        }
+        Assert.assertEquals(expected, reused);
+    }
+
+    private static List<String> describeItems(Iterable<TimeWindow<TestObject>> windows) {
+        List<String> descriptions = new ArrayList<>();
+        windows.forEach(window -> {
+            long sum = 0;
+            for(TestObject item : window)
+                sum += item.getTimestamp();
+            long[] forEachSum = new long[1];
+            window.forEach(item -> forEachSum[0] += item.getTimestamp());
+            descriptions.add(window.getStartTime() + "-" + window.getEndTime() + ":" + window.size() + ":" + sum + ":" + forEachSum[0]);
+        });
+        return descriptions;
+    }
+
+    @Test
+    public void testSkipEmptyWindows() {
+        // bursts of items far apart, after a start time long before the first burst
+        ArrayList<TestObject> source = new ArrayList<>();
+        SlidingWindowCollection<TestObject> swc = new SlidingWindowCollection<>(new ArrayList<>(),
+                testObject -> testObject.getTimestamp(), 100, 30, -1000000);
+        // windows shorter than the time between them leave gaps that hold items
+        SlidingWindowCollection<TestObject> gaps = new SlidingWindowCollection<>(new ArrayList<>(),
+                testObject -> testObject.getTimestamp(), 10, 25, -1000000);
+        TumblingWindowCollection<TestObject> twc = new TumblingWindowCollection<>(new ArrayList<>(),
+                testObject -> testObject.getTimestamp(), 100, -1000000);
+        Random random = new Random(11);
+        long time = 0;
+        for(int burst = 0; burst < 50; burst++) {
+            time += 1000 + random.nextInt(100000);
+            for(int i = 0; i < 20; i++) {
+                TestObject item = new TestObject(time + i * 7);
+                source.add(item);
+                swc.add(item);
+                gaps.add(item);
+                twc.add(item);
+            }
+        }
+
+        assertSkipsEmptyWindows(swc, () -> swc.setSkipEmptyWindows(true));
+        assertSkipsEmptyWindows(gaps, () -> gaps.setSkipEmptyWindows(true));
+        assertSkipsEmptyWindows(twc, () -> twc.setSkipEmptyWindows(true));
+
+        Assert.assertEquals(occupiedWindows(Windowing.toSlidingWindows(source, testObject -> testObject.getTimestamp(), 0, time + 200, 100, 30)),
+                describe(Windowing.toSlidingWindows(source, testObject -> testObject.getTimestamp(), 0, time + 200, 100, 30, true)));
+    }
+
+    @Test
+    public void testStartFarInThePast() {
+        ArrayList<TestObject> source = new ArrayList<>(Arrays.asList(new TestObject(0), new TestObject(12)));
+        Iterator<TimeWindow<TestObject>> it = Windowing.toSlidingWindows(source, testObject -> testObject.getTimestamp(),
+                Long.MIN_VALUE, 20, 10, 5).iterator();
+        Assert.assertTrue(it.hasNext());
+        Assert.assertEquals(Long.MIN_VALUE, it.next().getStartTime());
+
+        // Long.MIN_VALUE is 2 past a multiple of 5, as is -58
+        Assert.assertEquals(describe(Windowing.toSlidingWindows(source, testObject -> testObject.getTimestamp(), -58, 20, 10, 5, true)),
+                describe(Windowing.toSlidingWindows(source, testObject -> testObject.getTimestamp(), Long.MIN_VALUE, 20, 10, 5, true)));
+        Assert.assertEquals(4, describe(Windowing.toSlidingWindows(source, testObject -> testObject.getTimestamp(), Long.MIN_VALUE, 20, 10, 5, true)).size());
+    }
+
+    private static void assertSkipsEmptyWindows(Iterable<TimeWindow<TestObject>> windows, Runnable skipEmptyWindows) {
+        List<String> occupied = occupiedWindows(windows);
+        skipEmptyWindows.run();
+        Assert.assertEquals(occupied, describe(windows));
+        List<String> parallel = StreamSupport.stream(windows.spliterator(), true)
+                .map(window -> window.getStartTime() + "-" + window.getEndTime() + ":" + window.size())
+                .collect(Collectors.toList());
+        Assert.assertEquals(occupied, parallel);
+    }
+
+    private static List<String> occupiedWindows(Iterable<TimeWindow<TestObject>> windows) {
+        List<String> occupied = new ArrayList<>();
+        for(String description : describe(windows)) {
+            if(!description.endsWith(":0"))
+                occupied.add(description);
+        }
+        return occupied;
+    }
 }